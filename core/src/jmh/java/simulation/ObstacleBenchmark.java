@@ -0,0 +1,103 @@
+package simulation;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Obstacle.handleCollision and the batched Obstacle.collide of every obstacle type for points spread over the default
+ * 800x600 domain
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObstacleBenchmark {
+    private static final int POINTS = 4_096;
+
+    @Param({ "Wall", "Sphere", "Capsule" })
+    public String type;
+
+    private Obstacle obstacle;
+    private final double[] x = new double[POINTS];
+    private final double[] y = new double[POINTS];
+
+    // positions resolved in place by collide, reset from x and y before every invocation
+    private final double[] X = new double[POINTS];
+    private final double[] Y = new double[POINTS];
+    private final double[] oldX = new double[POINTS];
+    private final double[] oldY = new double[POINTS];
+    private final int[] particles = new int[POINTS];
+
+    private double sum;
+    private final Obstacle.CollisionHandler handler = (nx, ny, distance) -> sum += nx + ny + distance;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        switch (type) {
+            case "Wall":
+                obstacle = new Wall(0, 0, 1, 0.2);
+                break;
+            case "Sphere":
+                obstacle = new Sphere(400, 300, 60);
+                break;
+            case "Capsule":
+                obstacle = new Capsule(200, 327, 300, 370, 10);
+                break;
+            default:
+                throw new IllegalArgumentException(type);
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < POINTS; i++) {
+            x[i] = random.nextDouble() * 800;
+            y[i] = random.nextDouble() * 600;
+            oldX[i] = x[i] - random.nextDouble() + 0.5;
+            oldY[i] = y[i] - random.nextDouble() + 0.5;
+            particles[i] = i;
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        System.arraycopy(x, 0, X, 0, POINTS);
+        System.arraycopy(y, 0, Y, 0, POINTS);
+    }
+
+    /**
+     * @return the accumulated handler arguments so the collision can not be eliminated
+     */
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public double handleCollision() {
+        sum = 0;
+        for (int i = 0; i < POINTS; i++) {
+            obstacle.handleCollision(x[i], y[i], handler);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public double[] collide() {
+        obstacle.collide(particles, 0, POINTS, X, Y, oldX, oldY, 5, 0.1);
+        return X;
+    }
+
+    /**
+     * the per point fallback every obstacle had before the specialised loops
+     */
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public double[] collideFallback() {
+        for (int i = 0; i < POINTS; i++) {
+            int particle = i;
+            obstacle.handleCollision(X[i], Y[i], (nx, ny, distance) ->
+                    Obstacle.respond(particle, nx, ny, distance, X, Y, oldX, oldY, 5, 0.1));
+        }
+        return X;
+    }
+}
@@ -0,0 +1,108 @@
+package simulation;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the phases of a simulation step in isolation. Lives in the simulation package to reach the package private phase
+ * methods. Every invocation starts from the same warmed up state, phases that move particles restore it beforehand.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PhaseBenchmark {
+    private static final double DELTA_T = 0.0333333;
+    private static final int WARMUP_STEPS = 200;
+
+    @Param({ "Splash", "End", "SourceSink", "Viscoelastic" })
+    public String scene;
+
+    @Param({ "1" })
+    public int threads;
+
+    // cell size of the baked obstacle field, 0 for the analytic obstacles
+    @Param({ "0" })
+    public double obstacleField;
+
+    private FluidNew fluid;
+    private FluidNew.State state;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fluid = Scenes.create(scene);
+        fluid.setThreads(threads);
+        fluid.setExecutionMode(threads > 1 ? FluidNew.ExecutionMode.PARALLEL : FluidNew.ExecutionMode.SEQUENTIAL);
+        fluid.setObstacleField(obstacleField, obstacleField / 8);
+
+        for (int i = 0; i < WARMUP_STEPS; i++) {
+            fluid.simulate(DELTA_T);
+        }
+        fluid.updateNeighbors();
+        state = fluid.saveState();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fluid.shutdown();
+    }
+
+    @Setup(Level.Invocation)
+    public void restore() {
+        fluid.restoreState(state);
+    }
+
+    @Benchmark
+    public void gridBuild() {
+        fluid.grid.invalidate();
+        fluid.updateGrid();
+    }
+
+    @Benchmark
+    public void neighborListBuild() {
+        fluid.neighbors.invalidate();
+        fluid.updateNeighbors();
+    }
+
+    @Benchmark
+    public void viscosity() {
+        fluid.applyViscosity();
+    }
+
+    @Benchmark
+    public void springAdjust() {
+        fluid.adjustSprings(DELTA_T);
+    }
+
+    /**
+     * cleanup is part of the adjust pass, this puts a spring at rest on every pair in the list so all pairs beyond H
+     * expire
+     */
+    @Benchmark
+    public void springCleanup() {
+        NeighborList neighbors = fluid.neighbors;
+        for (int p = 0; p < neighbors.pairCount; p++) {
+            neighbors.setRest(p, neighbors.r(p));
+        }
+        neighbors.springCount = neighbors.pairCount;
+        fluid.adjustSprings(DELTA_T);
+    }
+
+    @Benchmark
+    public void densityRelaxation() {
+        fluid.relaxDensity();
+    }
+
+    @Benchmark
+    public void collisions() {
+        fluid.resolveCollisions();
+    }
+
+    @Benchmark
+    public void sinks() {
+        fluid.handleSinks();
+    }
+}
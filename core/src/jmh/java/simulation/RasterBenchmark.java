@@ -0,0 +1,54 @@
+package simulation;
+
+import org.openjdk.jmh.annotations.*;
+import rendering.ParticleRaster;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * one frame of the particle raster for the 4000 particles of the low viscosity scene after it settled for a second,
+ * with and without the debug overlays
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RasterBenchmark {
+    @Param({ "false", "true" })
+    public boolean overlays;
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    private FluidNew fluid;
+    private Snapshot snapshot;
+    private ParticleRaster raster;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fluid = FluidNew.LowViscosity();
+        fluid.drawVelocity = overlays;
+        fluid.drawSprings = overlays;
+        fluid.drawInteractionRadius = overlays;
+        for (int step = 0; step < 30; step++) {
+            fluid.advance(0.0666666);
+        }
+
+        snapshot = new Snapshot(fluid.getCapacity());
+        fluid.copyTo(snapshot);
+        raster = new ParticleRaster(800, 600, threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        raster.shutdown();
+        fluid.shutdown();
+    }
+
+    @Benchmark
+    public int[] render() {
+        return raster.render(fluid, snapshot);
+    }
+}
@@ -0,0 +1,55 @@
+package simulation;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * one full simulation step of every built in scene. JMH needs the scene names as constants, the set up fails if they
+ * are not exactly {@link Scenes#names()}, so a new scene can not be left out.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimulateBenchmark {
+    private static final double DELTA_T = 0.0333333;
+
+    @Param({ "HighViscosity", "LowViscosity", "Viscoelastic", "Stack", "TwoParticles", "Splash", "End", "SourceSink",
+            "Fountain", "Faucet", "DamBreak", "SloshingTank", "ObstacleField" })
+    public String scene;
+
+    @Param({ "1" })
+    public int threads;
+
+    private FluidNew fluid;
+
+    @Setup(Level.Trial)
+    public void setUp() throws NoSuchFieldException {
+        Set<String> listed = new LinkedHashSet<>(
+                Arrays.asList(SimulateBenchmark.class.getField("scene").getAnnotation(Param.class).value()));
+        if (!listed.equals(Scenes.names())) {
+            throw new IllegalStateException("the scene parameter lists " + listed + ", the built in scenes are "
+                    + Scenes.names());
+        }
+
+        fluid = Scenes.create(scene);
+        fluid.setThreads(threads);
+        fluid.setExecutionMode(threads > 1 ? FluidNew.ExecutionMode.PARALLEL : FluidNew.ExecutionMode.SEQUENTIAL);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fluid.shutdown();
+    }
+
+    @Benchmark
+    public void simulate() {
+        fluid.simulate(DELTA_T);
+    }
+}
@@ -0,0 +1,56 @@
+package simulation;
+
+import org.openjdk.jmh.annotations.*;
+import rendering.FluidSurface;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * tracing the surface of the 4000 particle high viscosity scene after it settled, alternating between the snapshots
+ * of two consecutive steps. With sleeping most particles rest and only the tiles around the moving ones are traced.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SurfaceBenchmark {
+    @Param({ "false", "true" })
+    public boolean sleeping;
+
+    private FluidNew fluid;
+    private Snapshot[] snapshots;
+    private FluidSurface surface;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fluid = FluidNew.HighViscosity();
+        fluid.setSleeping(sleeping);
+        for (int step = 0; step < 1500; step++) {
+            fluid.advance(0.0666666);
+        }
+
+        snapshots = new Snapshot[2];
+        for (int k = 0; k < snapshots.length; k++) {
+            fluid.advance(0.0666666);
+            snapshots[k] = new Snapshot(fluid.getCapacity());
+            fluid.copyTo(snapshots[k]);
+        }
+        surface = new FluidSurface(800, 600, fluid.getCapacity(), 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        surface.shutdown();
+        fluid.shutdown();
+    }
+
+    @Benchmark
+    public int update() {
+        surface.update(fluid, snapshots[next]);
+        next ^= 1;
+        return surface.getUpdatedTiles();
+    }
+}
@@ -0,0 +1,58 @@
+package simulation;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the sequential viscosity pass against the parallel one over cell colors for growing thread counts. Every invocation
+ * starts from the same warmed up state, like {@link PhaseBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ViscosityBenchmark {
+    private static final double DELTA_T = 0.0333333;
+    private static final int WARMUP_STEPS = 200;
+
+    @Param({ "HighViscosity", "LowViscosity", "DamBreak:100000" })
+    public String scene;
+
+    // 0 runs the sequential pass, otherwise the parallel one with that many threads
+    @Param({ "0", "1", "2", "4", "8" })
+    public int threads;
+
+    private FluidNew fluid;
+    private FluidNew.State state;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fluid = Scenes.create(scene);
+        fluid.setThreads(Math.max(threads, 1));
+        fluid.setExecutionMode(threads > 0 ? FluidNew.ExecutionMode.PARALLEL : FluidNew.ExecutionMode.SEQUENTIAL);
+
+        for (int i = 0; i < WARMUP_STEPS; i++) {
+            fluid.simulate(DELTA_T);
+        }
+        fluid.updateNeighbors();
+        state = fluid.saveState();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fluid.shutdown();
+    }
+
+    @Setup(Level.Invocation)
+    public void restore() {
+        fluid.restoreState(state);
+    }
+
+    @Benchmark
+    public void viscosity() {
+        fluid.applyViscosity();
+    }
+}
@@ -0,0 +1,91 @@
+package headless;
+
+import simulation.FluidMonitor;
+import simulation.FluidNew;
+import simulation.Phase;
+import simulation.Scenes;
+
+/**
+ * runs a scene without any user interface and reports its throughput
+ *
+ * usage: HeadlessRunner scene [steps] [threads] [obstacle field cell size] [adaptive] [sleeping]
+ *
+ * with adaptive every step advances the same interval with CFL sub-steps, see {@link FluidNew#advance}, with sleeping
+ * particles at rest are put to sleep, see {@link FluidNew#setSleeping}
+ *
+ * the simulation is registered with JMX while it runs, see {@link FluidMonitor}
+ */
+public class HeadlessRunner {
+    private static final double DELTA_T = 0.0333333;
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("usage: HeadlessRunner scene [steps] [threads] [obstacle field cell size] [adaptive] [sleeping]");
+            System.err.println("scenes: " + String.join(", ", Scenes.names()));
+            System.err.println("sized scenes: " + String.join(", ", Scenes.sizedNames()) + " as <scene>:<particles>");
+            System.exit(1);
+        }
+
+        String scene = args[0];
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        double fieldCellSize = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+        boolean adaptive = args.length > 4 && Boolean.parseBoolean(args[4]);
+        boolean sleeping = args.length > 5 && Boolean.parseBoolean(args[5]);
+        int warmup = Math.min(100, steps / 10);
+
+        FluidNew fluid = Scenes.create(scene);
+        fluid.setThreads(threads);
+        fluid.setExecutionMode(threads > 1 ? FluidNew.ExecutionMode.PARALLEL : FluidNew.ExecutionMode.SEQUENTIAL);
+        fluid.setObstacleField(fieldCellSize, fieldCellSize / 8);
+        fluid.setSleeping(sleeping);
+        FluidMonitor.register(fluid, scene);
+
+        for (int i = 0; i < warmup; i++) {
+            step(fluid, adaptive);
+        }
+        fluid.resetPhaseNanos();
+
+        long subSteps = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < steps; i++) {
+            subSteps += step(fluid, adaptive);
+        }
+        long total = System.nanoTime() - start;
+
+        fluid.shutdown();
+
+        System.out.printf("scene %s, %d particles, %d steps after %d warm up steps, %d thread(s)%n",
+                scene, fluid.getParticleCount(), steps, warmup, threads);
+        if (fieldCellSize > 0) {
+            System.out.printf("baked obstacles, max error %.4f%n", fluid.getObstacleFieldError());
+            if (fluid.getObstacleFieldCacheError() != null) {
+                System.out.println(fluid.getObstacleFieldCacheError());
+            }
+        }
+        System.out.printf("%.1f steps/s, %.3f ms/step%n", steps / (total / 1e9), total / 1e6 / steps);
+        if (adaptive) {
+            System.out.printf("%d sub-steps, %.2f per step%n", subSteps, (double) subSteps / steps);
+        }
+        if (sleeping) {
+            System.out.printf("%.1f%% of the particles active%n", 100 * fluid.getActiveFraction());
+        }
+        System.out.println();
+        System.out.printf("%-20s %10s %7s%n", "phase", "ms/step", "share");
+        for (Phase phase : Phase.values()) {
+            long nanos = fluid.getPhaseNanos(phase);
+            System.out.printf("%-20s %10.4f %6.1f%%%n", phase, nanos / 1e6 / steps, 100.0 * nanos / total);
+        }
+    }
+
+    /**
+     * @return number of sub-steps taken
+     */
+    private static int step(FluidNew fluid, boolean adaptive) {
+        if (adaptive) {
+            return fluid.advance(DELTA_T);
+        }
+        fluid.simulate(DELTA_T);
+        return 1;
+    }
+}
@@ -0,0 +1,93 @@
+package headless;
+
+import simulation.FluidNew;
+import simulation.Phase;
+import simulation.Scenes;
+
+/**
+ * runs the procedural scenes at growing particle and thread counts and reports ns per particle and step. Linear
+ * scaling keeps that number constant over the particle counts.
+ *
+ * every run simulates the same stretch of time, so all particle counts see the same flow
+ *
+ * usage: ScalingReport [max threads] [particle counts, comma separated] [steps] [storage DOUBLE | FLOAT]
+ */
+public class ScalingReport {
+    private static final double DELTA_T = 0.0333333;
+    private static final String[] SCENES = { "DamBreak", "SloshingTank", "ObstacleField" };
+
+    private static final int WARMUP_STEPS = 10;
+
+    public static void main(String[] args) {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        String[] counts = (args.length > 1 ? args[1] : "10000,100000,1000000").split(",");
+        int steps = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        FluidNew.Storage storage = FluidNew.Storage.valueOf(args.length > 3 ? args[3] : "DOUBLE");
+
+        System.out.println("vs smallest: ns/particle relative to the smallest particle count at the same thread count");
+        System.out.println("speedup: against one thread at the same particle count");
+        System.out.println();
+        // let the JIT compile the step before the first measured run
+        new Run(SCENES[0], Integer.parseInt(counts[0].trim()), 1, steps, storage);
+
+        System.out.printf("%d steps after %d warm up steps per run, %s storage%n", steps, WARMUP_STEPS,
+                storage.name().toLowerCase());
+        System.out.printf("%-14s %9s %7s %10s %12s %11s %8s  %s%n", "scene", "particles", "threads", "ms/step", "ns/particle", "vs smallest", "speedup", "largest phase");
+
+        for (String scene : SCENES) {
+            double[] smallest = new double[maxThreads + 1];
+
+            for (String count : counts) {
+                int particles = Integer.parseInt(count.trim());
+                double sequential = 0;
+
+                for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                    Run run = new Run(scene, particles, threads, steps, storage);
+                    if (threads == 1) sequential = run.nanosPerParticle;
+                    if (smallest[threads] == 0) smallest[threads] = run.nanosPerParticle;
+
+                    System.out.printf("%-14s %9d %7d %10.2f %12.1f %10.2fx %7.2fx  %s %.0f%%%n",
+                            scene, particles, threads, run.millisPerStep, run.nanosPerParticle,
+                            run.nanosPerParticle / smallest[threads], sequential / run.nanosPerParticle,
+                            run.largestPhase, run.largestPhaseShare * 100);
+                }
+            }
+        }
+    }
+
+    private static class Run {
+        final double millisPerStep;
+        final double nanosPerParticle;
+        final Phase largestPhase;
+        final double largestPhaseShare;
+
+        Run(String scene, int particles, int threads, int steps, FluidNew.Storage storage) {
+            FluidNew fluid = Scenes.create(scene, particles);
+            fluid.setStorage(storage);
+            fluid.setThreads(threads);
+            fluid.setExecutionMode(threads > 1 ? FluidNew.ExecutionMode.PARALLEL : FluidNew.ExecutionMode.SEQUENTIAL);
+
+            for (int i = 0; i < WARMUP_STEPS; i++) {
+                fluid.simulate(DELTA_T);
+            }
+            fluid.resetPhaseNanos();
+
+            long start = System.nanoTime();
+            for (int i = 0; i < steps; i++) {
+                fluid.simulate(DELTA_T);
+            }
+            long total = System.nanoTime() - start;
+            fluid.shutdown();
+
+            Phase largest = Phase.values()[0];
+            for (Phase phase : Phase.values()) {
+                if (fluid.getPhaseNanos(phase) > fluid.getPhaseNanos(largest)) largest = phase;
+            }
+
+            millisPerStep = total / 1e6 / steps;
+            nanosPerParticle = (double) total / steps / particles;
+            largestPhase = largest;
+            largestPhaseShare = (double) fluid.getPhaseNanos(largest) / total;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package headless;
+
+import simulation.FluidNew;
+import simulation.Scenes;
+
+import java.util.Arrays;
+
+/**
+ * compares float storage against the double default, see {@link FluidNew#setStorage}. Every scene runs once per
+ * storage from the same start, then the particles are compared by id.
+ *
+ * the flows are chaotic, so single particles drift apart once a splash breaks up. As a yardstick the reference
+ * column shows the mean distance between two double runs that only differ in the order of the updates (SEQUENTIAL
+ * against PARALLEL with two threads). The bulk columns show whether the fluid as a whole behaves the same: the centre
+ * of mass and the mean speed. Particles resting exactly at the contact distance of an obstacle can be rounded into
+ * it and feel its friction, TwoParticles slides along the floor in double storage but comes to rest in float.
+ * Fountain runs without stabilization and is only marginally stable in the sequential order, its speeds spike
+ * after about 480 steps in double storage too. Rounding the double state to float a single time is already enough to
+ * make it diverge there, so the float run diverging says nothing about float storage.
+ *
+ * usage: StorageReport [steps] [scenes, comma separated]
+ */
+public class StorageReport {
+    private static final double DELTA_T = 0.0333333;
+
+    public static void main(String[] args) {
+        int steps = args.length > 0 ? Integer.parseInt(args[0]) : 600;
+        String[] scenes = args.length > 1 ? args[1].split(",") : Scenes.names().toArray(new String[0]);
+
+        System.out.printf("%d steps, distances in domain units, memory of particle arrays and neighbour list%n", steps);
+        System.out.printf("%-16s %9s %9s %9s %9s %9s %10s %10s %10s %9s %9s%n", "scene", "particles", "double ms",
+                "float ms", "double MB", "float MB", "mean dist", "max dist", "reference", "centre", "speed");
+
+        for (String scene : scenes) {
+            Run full = new Run(scene.trim(), FluidNew.Storage.DOUBLE, 1, steps);
+            Run single = new Run(scene.trim(), FluidNew.Storage.FLOAT, 1, steps);
+            Run reordered = new Run(scene.trim(), FluidNew.Storage.DOUBLE, 2, steps);
+
+            System.out.printf("%-16s %9d %9.3f %9.3f %9.1f %9.1f %10.3f %10.3f %10.3f %9.3f %8.2f%%%n", scene,
+                    full.common(single), full.millisPerStep, single.millisPerStep,
+                    full.memoryBytes / 1e6, single.memoryBytes / 1e6, full.meanDistance(single),
+                    full.maxDistance(single), full.meanDistance(reordered),
+                    Math.hypot(full.centreX - single.centreX, full.centreY - single.centreY),
+                    full.meanSpeed == 0 ? 0 : 100 * (single.meanSpeed - full.meanSpeed) / full.meanSpeed);
+        }
+    }
+
+    private static class Run {
+        final double millisPerStep;
+        final long memoryBytes;
+
+        // positions by particle id, NaN for ids not alive
+        final double[] x;
+        final double[] y;
+        double centreX;
+        double centreY;
+        double meanSpeed;
+
+        Run(String scene, FluidNew.Storage storage, int threads, int steps) {
+            FluidNew fluid = Scenes.create(scene);
+            fluid.setStorage(storage);
+            fluid.setThreads(threads);
+            fluid.setExecutionMode(threads > 1 ? FluidNew.ExecutionMode.PARALLEL : FluidNew.ExecutionMode.SEQUENTIAL);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < steps; i++) {
+                fluid.simulate(DELTA_T);
+            }
+            millisPerStep = (System.nanoTime() - start) / 1e6 / steps;
+            memoryBytes = fluid.getMemoryBytes();
+            fluid.shutdown();
+
+            int count = fluid.getParticleCount();
+            x = new double[fluid.getCapacity()];
+            y = new double[fluid.getCapacity()];
+            Arrays.fill(x, Double.NaN);
+            Arrays.fill(y, Double.NaN);
+            for (int i = 0; i < count; i++) {
+                int id = fluid.getParticleId(i);
+                x[id] = fluid.getX(i);
+                y[id] = fluid.getY(i);
+                centreX += fluid.getX(i) / count;
+                centreY += fluid.getY(i) / count;
+                meanSpeed += Math.hypot(fluid.getVX(i), fluid.getVY(i)) / count;
+            }
+        }
+
+        /**
+         * @return number of ids alive in both runs
+         */
+        int common(Run other) {
+            int common = 0;
+            for (int id = 0; id < x.length; id++) {
+                if (x[id] == x[id] && other.x[id] == other.x[id]) common++;
+            }
+            return common;
+        }
+
+        double meanDistance(Run other) {
+            double sum = 0;
+            int particles = 0;
+            for (int id = 0; id < x.length; id++) {
+                double d = Math.hypot(x[id] - other.x[id], y[id] - other.y[id]);
+                if (d != d) continue;
+
+                sum += d;
+                particles++;
+            }
+            return particles == 0 ? 0 : sum / particles;
+        }
+
+        double maxDistance(Run other) {
+            double max = 0;
+            for (int id = 0; id < x.length; id++) {
+                double d = Math.hypot(x[id] - other.x[id], y[id] - other.y[id]);
+                if (d == d) max = Math.max(max, d);
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+module fluid.sim.core {
+    exports simulation;
+    exports headless;
+    exports rendering;
+
+    requires trove4j;
+    requires jdk.jfr;
+    requires java.management;
+    requires jdk.management;
+}
@@ -0,0 +1,524 @@
+package rendering;
+
+import simulation.DrawSurface;
+import simulation.FluidNew;
+import simulation.ParallelExecutor;
+import simulation.Snapshot;
+
+import java.util.Arrays;
+
+/**
+ * draws the fluid as a filled surface instead of single particles. The particles are summed into a density field
+ * sampled on a fine lattice, the region above an iso value is traced with marching squares and filled as polygons.
+ *
+ * the field is split into square tiles with the interaction radius as side, so a tile only sees the particles of the
+ * 3x3 tiles around it. The particles of the snapshot are counting sorted into these tiles whenever something has to
+ * be traced, the binning of the simulation can not be used: it lags behind the published positions, is invalid after
+ * particles were removed and belongs to the simulation thread. Only tiles within reach of a particle that moved,
+ * appeared or vanished since the last update are traced again, in parallel, the others keep their polygons. Resting
+ * and sleeping fluid costs nothing and the work per tile depends on the lattice, not on the number of particles drawn.
+ *
+ * within a tile, rows of the lattice entirely inside become one rectangle and the squares of the other rows that
+ * touch along an edge are joined into one polygon, so a tile holds a few polygons instead of one per square. Inside
+ * corners are pushed half a pixel outwards, so antialiased edges of neighbouring rows and tiles do not leave seams.
+ *
+ * the iso value is chosen so that a lone particle becomes a disc of the draw radius. One world unit is one pixel and
+ * only the area 0 .. width, 0 .. height is traced.
+ */
+public class FluidSurface {
+    // lattice spacing in pixels the sample count per tile side is rounded to
+    private static final double SPACING = 4;
+
+    private final int width;
+    private final int height;
+
+    private final ParallelExecutor executor;
+    private final ParallelExecutor.RangeTask traceTask = this::traceTiles;
+
+    // field parameters, the tiles are rebuilt when they change
+    private double radius = Double.NaN;
+    private double iso;
+    private int samples;
+    private double spacing;
+    private int tilesX;
+    private int tilesY;
+    private Tile[] tiles = new Tile[0];
+
+    // the particles of bin b are binned[binStart[b]] .. binned[binStart[b + 1] - 1]. Bins are the tiles plus a border
+    // of one, bin (x, y) holds tile (x - 1, y - 1), particles further out reach no tile and are not binned.
+    private int binsX;
+    private int binsY;
+    private int[] binStart = new int[1];
+    private int[] binCursor = new int[0];
+    private final int[] binOf;
+    private final int[] binned;
+
+    // scratch of every chunk
+    private final Scratch[] scratch;
+
+    private int[] dirtyTiles = new int[64];
+    private int dirtyCount = 0;
+
+    // positions of the particles by id at the last update, NaN if it was not drawn
+    private final double[] lastX;
+    private final double[] lastY;
+    private final int[] lastIds;
+    private int lastCount = 0;
+    private final int[] seen;
+    private int update = 0;
+
+    // the snapshot of the update running
+    private Snapshot snapshot;
+
+    // polygon handed to the surface
+    private double[] pointX = new double[64];
+    private double[] pointY = new double[64];
+
+    public FluidSurface(int width, int height, int capacity, int threads) {
+        this.width = width;
+        this.height = height;
+        executor = new ParallelExecutor(threads);
+        scratch = new Scratch[executor.getChunks()];
+        for (int c = 0; c < scratch.length; c++) {
+            scratch[c] = new Scratch();
+        }
+
+        binOf = new int[capacity];
+        binned = new int[capacity];
+        lastX = new double[capacity];
+        lastY = new double[capacity];
+        lastIds = new int[capacity];
+        seen = new int[capacity];
+    }
+
+    /**
+     * @return number of tiles traced by the last update
+     */
+    public int getUpdatedTiles() {
+        return dirtyCount;
+    }
+
+    /**
+     * bring the surface up to the particles of the snapshot, tracing only the tiles near particles that changed
+     */
+    public void update(FluidNew fluid, Snapshot snapshot) {
+        this.snapshot = snapshot;
+        configure(fluid.getInteractionRadius(), fluid.getDrawRadius());
+        dirtyCount = 0;
+        update++;
+
+        int count = snapshot.getCount();
+        for (int i = 0; i < count; i++) {
+            int id = snapshot.getId(i);
+            double x = snapshot.getX(i);
+            double y = snapshot.getY(i);
+            seen[id] = update;
+            if (x == lastX[id] && y == lastY[id]) continue;
+
+            markAround(lastX[id], lastY[id]);
+            markAround(x, y);
+            lastX[id] = x;
+            lastY[id] = y;
+        }
+        for (int k = 0; k < lastCount; k++) {
+            int id = lastIds[k];
+            if (seen[id] == update) continue;
+
+            markAround(lastX[id], lastY[id]);
+            lastX[id] = Double.NaN;
+            lastY[id] = Double.NaN;
+        }
+        for (int i = 0; i < count; i++) {
+            lastIds[i] = snapshot.getId(i);
+        }
+        lastCount = count;
+
+        if (dirtyCount > 0) {
+            bin(count);
+            executor.forRange(dirtyCount, traceTask);
+            for (int k = 0; k < dirtyCount; k++) {
+                tiles[dirtyTiles[k]].dirty = false;
+            }
+        }
+        this.snapshot = null;
+    }
+
+    /**
+     * fill the surface traced by the last update
+     */
+    public void draw(DrawSurface context) {
+        context.setFill(DrawSurface.MEDIUMBLUE);
+        for (Tile tile : tiles) {
+            if (tile == null) continue;
+
+            for (int polygon = 0; polygon < tile.polygons; polygon++) {
+                int from = tile.starts[polygon];
+                int points = tile.starts[polygon + 1] - from;
+                if (pointX.length < points) {
+                    pointX = new double[Math.max(points, pointX.length * 2)];
+                    pointY = new double[pointX.length];
+                }
+                System.arraycopy(tile.xs, from, pointX, 0, points);
+                System.arraycopy(tile.ys, from, pointY, 0, points);
+                context.fillPolygon(pointX, pointY, points);
+            }
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * set the kernel radius and iso value, forgetting all tiles if they changed
+     */
+    private void configure(double radius, double drawRadius) {
+        if (this.radius == radius && iso == iso(radius, drawRadius)) return;
+
+        this.radius = radius;
+        iso = iso(radius, drawRadius);
+        samples = Math.max(1, (int) Math.round(radius / SPACING));
+        spacing = radius / samples;
+        tilesX = (int) Math.ceil(width / radius);
+        tilesY = (int) Math.ceil(height / radius);
+        tiles = new Tile[tilesX * tilesY];
+        binsX = tilesX + 2;
+        binsY = tilesY + 2;
+        binStart = new int[binsX * binsY + 1];
+        binCursor = new int[binsX * binsY];
+        for (Scratch tmp : scratch) {
+            tmp.resize(samples);
+        }
+
+        // positions are forgotten too, so every tile with particles is traced
+        Arrays.fill(lastX, Double.NaN);
+        Arrays.fill(lastY, Double.NaN);
+        lastCount = 0;
+    }
+
+    /**
+     * @return the field value of a lone particle at its draw radius
+     */
+    private static double iso(double radius, double drawRadius) {
+        double ratio = Math.min(drawRadius / radius, 0.9);
+        return kernel(ratio * ratio);
+    }
+
+    /**
+     * @param q squared distance as fraction of the squared kernel radius, below 1
+     */
+    private static double kernel(double q) {
+        double w = 1 - q;
+        return w * w * w;
+    }
+
+    /**
+     * mark the tiles whose field a particle at (x, y) contributes to, nothing if it is not finite
+     */
+    private void markAround(double x, double y) {
+        if (!(Math.abs(x) < Double.MAX_VALUE && Math.abs(y) < Double.MAX_VALUE)) return;
+
+        int cx = (int) Math.floor(x / radius);
+        int cy = (int) Math.floor(y / radius);
+        for (int ty = Math.max(cy - 1, 0); ty <= Math.min(cy + 1, tilesY - 1); ty++) {
+            for (int tx = Math.max(cx - 1, 0); tx <= Math.min(cx + 1, tilesX - 1); tx++) {
+                int t = ty * tilesX + tx;
+                Tile tile = tiles[t];
+                if (tile == null) {
+                    tile = tiles[t] = new Tile(tx, ty);
+                }
+                if (tile.dirty) continue;
+
+                tile.dirty = true;
+                if (dirtyCount == dirtyTiles.length) {
+                    dirtyTiles = Arrays.copyOf(dirtyTiles, dirtyCount * 2);
+                }
+                dirtyTiles[dirtyCount++] = t;
+            }
+        }
+    }
+
+    /**
+     * counting sort of the snapshot particles into the bins, in particle order within a bin
+     */
+    private void bin(int count) {
+        Arrays.fill(binStart, 0);
+        for (int i = 0; i < count; i++) {
+            // compared before the cast, so far away and not finite positions are not binned
+            double bx = Math.floor(snapshot.getX(i) / radius) + 1;
+            double by = Math.floor(snapshot.getY(i) / radius) + 1;
+            if (bx >= 0 && bx < binsX && by >= 0 && by < binsY) {
+                binOf[i] = (int) by * binsX + (int) bx;
+                binStart[binOf[i] + 1]++;
+            } else {
+                binOf[i] = -1;
+            }
+        }
+        for (int b = 0; b < binsX * binsY; b++) {
+            binStart[b + 1] += binStart[b];
+        }
+
+        System.arraycopy(binStart, 0, binCursor, 0, binCursor.length);
+        for (int i = 0; i < count; i++) {
+            if (binOf[i] >= 0) binned[binCursor[binOf[i]]++] = i;
+        }
+    }
+
+    private void traceTiles(int chunk, int from, int to) {
+        Scratch tmp = scratch[chunk];
+        for (int k = from; k < to; k++) {
+            Tile tile = tiles[dirtyTiles[k]];
+            sample(tile, tmp.field);
+            trace(tile, tmp);
+        }
+    }
+
+    /**
+     * sum the particles of the 3x3 tiles around the tile into its (samples + 1)^2 lattice points. The three bins of a
+     * row are next to each other, so their particles are too.
+     */
+    private void sample(Tile tile, double[] field) {
+        Arrays.fill(field, 0);
+        Snapshot snapshot = this.snapshot;
+        double originX = tile.x * radius;
+        double originY = tile.y * radius;
+        double radiusSq = radius * radius;
+        int side = samples + 1;
+
+        for (int row = tile.y; row <= tile.y + 2; row++) {
+            int bin = row * binsX + tile.x;
+            for (int slot = binStart[bin]; slot < binStart[bin + 3]; slot++) {
+                int i = binned[slot];
+                double px = snapshot.getX(i) - originX;
+                double py = snapshot.getY(i) - originY;
+                int a0 = Math.max(0, (int) Math.ceil((px - radius) / spacing));
+                int a1 = Math.min(samples, (int) Math.floor((px + radius) / spacing));
+                int b0 = Math.max(0, (int) Math.ceil((py - radius) / spacing));
+                int b1 = Math.min(samples, (int) Math.floor((py + radius) / spacing));
+
+                for (int b = b0; b <= b1; b++) {
+                    double dy = b * spacing - py;
+                    for (int a = a0; a <= a1; a++) {
+                        double dx = a * spacing - px;
+                        double q = (dx * dx + dy * dy) / radiusSq;
+                        if (q < 1) field[b * side + a] += kernel(q);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * marching squares over the lattice of the tile. Rows entirely inside become one rectangle, the squares of the
+     * other rows are walked left to right and joined into one polygon as long as they touch along an edge.
+     */
+    private void trace(Tile tile, Scratch tmp) {
+        tile.clear();
+        double[] field = tmp.field;
+        double originX = tile.x * radius;
+        double originY = tile.y * radius;
+        int side = samples + 1;
+
+        int block = -1;
+        for (int b = 0; b <= samples; b++) {
+            boolean full = b < samples;
+            for (int k = b * side; full && k < (b + 2) * side; k++) {
+                full = field[k] >= iso;
+            }
+            if (full) {
+                if (block < 0) block = b;
+                continue;
+            }
+            if (block >= 0) {
+                rectangle(tile, originX, originY + block * spacing, originX + samples * spacing, originY + b * spacing);
+                block = -1;
+            }
+            if (b == samples) break;
+
+            traceRow(tile, tmp, b, originX, originY);
+        }
+    }
+
+    /**
+     * a rectangle entirely inside, grown by half a pixel like the inside corners of the other polygons
+     */
+    private static void rectangle(Tile tile, double x0, double y0, double x1, double y1) {
+        tile.add(x0 - 0.5, y0 - 0.5);
+        tile.add(x1 + 0.5, y0 - 0.5);
+        tile.add(x1 + 0.5, y1 + 0.5);
+        tile.add(x0 - 0.5, y1 + 0.5);
+        tile.close();
+    }
+
+    /**
+     * walk the squares of lattice row b. The open polygon runs counter clockwise: its lower chain is added to the tile
+     * as the squares are walked, its upper chain is collected left to right and added backwards once the polygon is
+     * closed, which happens when the right edge of a square is entirely outside or the tile ends. Saddles whose
+     * center is below the iso value close the polygon with the left corner and open a new one with the right.
+     */
+    private void traceRow(Tile tile, Scratch tmp, int b, double originX, double originY) {
+        double[] field = tmp.field;
+        int side = samples + 1;
+        boolean open = false;
+
+        for (int a = 0; a < samples; a++) {
+            // corners counter clockwise from the bottom left
+            double v0 = field[b * side + a];
+            double v1 = field[b * side + a + 1];
+            double v2 = field[(b + 1) * side + a + 1];
+            double v3 = field[(b + 1) * side + a];
+            boolean in0 = v0 >= iso;
+            boolean in1 = v1 >= iso;
+            boolean in2 = v2 >= iso;
+            boolean in3 = v3 >= iso;
+            if (!in0 && !in1 && !in2 && !in3) continue;
+
+            double x0 = originX + a * spacing;
+            double y0 = originY + b * spacing;
+            double x1 = x0 + spacing;
+            double y1 = y0 + spacing;
+            // inside corners, pushed outwards. A polygon is only open on the left of a square at the tile's border,
+            // within the tile the square to the left is joined
+            double left = x0 - 0.5;
+            double right = a == samples - 1 ? x1 + 0.5 : x1;
+            double bottom = y0 - 0.5;
+            double top = y1 + 0.5;
+
+            boolean saddle = in0 == in2 && in1 == in3 && in0 != in1;
+            if (saddle && (v0 + v1 + v2 + v3) * 0.25 < iso) {
+                if (in0) {
+                    if (!open) {
+                        tile.add(left, bottom);
+                        tmp.upper(x0, y0 + spacing * cut(v0, v3));
+                    }
+                    tile.add(x0 + spacing * cut(v0, v1), y0);
+                    tmp.finish(tile);
+
+                    tile.add(x1, y0 + spacing * cut(v1, v2));
+                    tmp.upper(x1 - spacing * cut(v2, v3), y1);
+                    tmp.upper(right, top);
+                } else {
+                    if (!open) {
+                        tmp.upper(x0, y1 - spacing * cut(v3, v0));
+                        tmp.upper(left, top);
+                    }
+                    tmp.upper(x0 + spacing * cut(v3, v2), y1);
+                    tmp.finish(tile);
+
+                    tile.add(x1 - spacing * cut(v1, v0), y0);
+                    tile.add(right, bottom);
+                    tmp.upper(x1, y0 + spacing * cut(v1, v2));
+                }
+            } else {
+                // lower chain left to right
+                if (in0 && !open) tile.add(left, bottom);
+                if (in0 != in1) tile.add(x0 + spacing * cut(v0, v1), y0);
+                if (in1) tile.add(right, bottom);
+                if (!in1 && in2) tile.add(x1, y0 + spacing * cut(v1, v2));
+
+                // upper chain left to right
+                if (in3 != in0 && !open) tmp.upper(x0, y0 + spacing * cut(v0, v3));
+                if (in3 && !open) tmp.upper(left, top);
+                if (in2 != in3) tmp.upper(x0 + spacing * cut(v3, v2), y1);
+                if (in2) tmp.upper(right, top);
+                if (in1 && !in2) tmp.upper(x1, y0 + spacing * cut(v1, v2));
+            }
+            open = true;
+
+            if (!in1 && !in2 || a == samples - 1) {
+                tmp.finish(tile);
+                open = false;
+            }
+        }
+    }
+
+    /**
+     * @return where the iso value lies between the values at the start and the end of an edge, as fraction of it
+     */
+    private double cut(double from, double to) {
+        return (iso - from) / (to - from);
+    }
+
+    /**
+     * the field and the upper chain of the open polygon, one per chunk
+     */
+    private static final class Scratch {
+        double[] field = new double[0];
+        double[] upperX = new double[0];
+        double[] upperY = new double[0];
+        int upperCount = 0;
+
+        void resize(int samples) {
+            field = new double[(samples + 1) * (samples + 1)];
+            // at most four upper points per square
+            upperX = new double[4 * samples];
+            upperY = new double[4 * samples];
+        }
+
+        void upper(double x, double y) {
+            upperX[upperCount] = x;
+            upperY[upperCount] = y;
+            upperCount++;
+        }
+
+        /**
+         * add the upper chain backwards and close the polygon
+         */
+        void finish(Tile tile) {
+            for (int k = upperCount - 1; k >= 0; k--) {
+                tile.add(upperX[k], upperY[k]);
+            }
+            upperCount = 0;
+            tile.close();
+        }
+    }
+
+    /**
+     * the polygons of one tile, polygon k has the points starts[k] .. starts[k + 1] - 1
+     */
+    private static final class Tile {
+        final int x;
+        final int y;
+        boolean dirty = false;
+
+        double[] xs = new double[64];
+        double[] ys = new double[64];
+        int[] starts = new int[17];
+        int points = 0;
+        int polygons = 0;
+
+        Tile(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        void clear() {
+            points = 0;
+            polygons = 0;
+        }
+
+        /**
+         * append a point to the open polygon, replacing the last one if both continue a horizontal edge
+         */
+        void add(double x, double y) {
+            if (points - starts[polygons] >= 2 && ys[points - 1] == y && ys[points - 2] == y) {
+                xs[points - 1] = x;
+                return;
+            }
+            if (points == xs.length) {
+                xs = Arrays.copyOf(xs, points * 2);
+                ys = Arrays.copyOf(ys, points * 2);
+            }
+            xs[points] = x;
+            ys[points] = y;
+            points++;
+        }
+
+        void close() {
+            if (polygons + 1 == starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+            }
+            starts[++polygons] = points;
+        }
+    }
+}
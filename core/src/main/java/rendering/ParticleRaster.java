@@ -0,0 +1,408 @@
+package rendering;
+
+import simulation.DrawSurface;
+import simulation.FluidNew;
+import simulation.ParallelExecutor;
+import simulation.Snapshot;
+
+import java.util.Arrays;
+
+/**
+ * renders the particles of a snapshot into an ARGB pixel buffer, the fast alternative to drawing them one by one on a
+ * {@link DrawSurface}. Particles are blended from splat sprites built once per radius, their color comes from a
+ * velocity lookup table and the debug overlays (interaction radius, springs, velocities) go into the same buffer.
+ *
+ * the buffer is cut into bands of rows which are filled in parallel. Everything drawn is first sorted into the bands
+ * it touches, so every band is written by one thread and keeps the drawing order of the vector renderer.
+ *
+ * one world unit is one pixel, y points up and row 0 is the top of the buffer. Pixels are premultiplied ARGB with a
+ * transparent background, to be composited over the obstacles.
+ */
+public class ParticleRaster {
+    // sub pixel positions of a sprite per axis, and samples per pixel and axis to compute its coverage
+    private static final int PHASES = 4;
+    private static final int SAMPLES = 4;
+
+    private static final double PARTICLE_OPACITY = 0.7;
+    private static final double DOT_RADIUS = 2;
+
+    // particle color over velocities 0 .. 1, faster particles have the last color
+    private static final int[] VELOCITY_COLORS = new int[256];
+
+    static {
+        for (int k = 0; k < VELOCITY_COLORS.length; k++) {
+            VELOCITY_COLORS[k] = DrawSurface.interpolate(DrawSurface.MEDIUMBLUE, DrawSurface.MEDIUMORCHID,
+                    k / (double) (VELOCITY_COLORS.length - 1));
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+
+    private final ParallelExecutor executor;
+    private final int bandRows;
+    private final int bands;
+    private final ParallelExecutor.RangeTask bandTask = this::renderBands;
+
+    // the particles and springs touching band b are entries[start[b]] .. entries[start[b + 1] - 1]
+    private final int[] particleStart;
+    private final int[] springStart;
+    private final int[] cursor;
+    private int[] particleEntries = new int[1024];
+    private int[] springEntries = new int[1024];
+    private int[] lowBand = new int[1024];
+    private int[] highBand = new int[1024];
+
+    private Splat particle;
+    private Splat ring;
+    private final Splat dot = new Splat(DOT_RADIUS, 0, 1);
+
+    // state of the current frame, read by the band tasks
+    private Snapshot snapshot;
+    private double stretch;
+    private boolean drawParticle;
+    private boolean drawRadius;
+    private boolean drawVelocity;
+
+    public ParticleRaster(int width, int height, int threads) {
+        this.width = width;
+        this.height = height;
+        pixels = new int[width * height];
+
+        executor = new ParallelExecutor(threads);
+        bandRows = Math.max(1, Math.min(16, height / executor.getChunks()));
+        bands = (height + bandRows - 1) / bandRows;
+        particleStart = new int[bands + 1];
+        springStart = new int[bands + 1];
+        cursor = new int[bands];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the pixels of the last frame, row by row from the top
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    /**
+     * render the particles of the snapshot with the draw settings of the fluid
+     *
+     * @return the pixel buffer
+     */
+    public int[] render(FluidNew fluid, Snapshot snapshot) {
+        this.snapshot = snapshot;
+        stretch = fluid.getVelocityStretch();
+        drawParticle = fluid.drawParticle;
+        drawRadius = fluid.drawInteractionRadius;
+        drawVelocity = fluid.drawVelocity;
+
+        double particleRadius = fluid.getDrawRadius();
+        double h = fluid.getInteractionRadius();
+        if (particle == null || particle.radius != particleRadius) {
+            particle = new Splat(particleRadius, 0, PARTICLE_OPACITY);
+        }
+        if (ring == null || ring.radius != h + 0.5) {
+            ring = new Splat(h + 0.5, h - 0.5, 1);
+        }
+
+        // sort particles and springs into bands
+        int count = snapshot.getCount();
+        int springCount = snapshot.getSpringCount();
+        ensureItems(Math.max(count, springCount));
+        double reach = Math.max(particle.half, Math.max(drawRadius ? ring.half : 0, dot.half)) + 1;
+        for (int i = 0; i < count; i++) {
+            // a particle that diverged is not drawn, like the vector renderer skips it
+            double row = Double.isFinite(snapshot.getX(i)) ? height - snapshot.getY(i) : Double.NaN;
+            double low = row - reach;
+            double high = row + reach;
+            if (drawVelocity) {
+                double end = row - snapshot.getVY(i) * stretch;
+                low = Math.min(low, end - 2);
+                high = Math.max(high, end + 2);
+            }
+            setBands(i, low, high);
+        }
+        particleEntries = sort(count, particleStart, particleEntries);
+
+        for (int s = 0; s < springCount; s++) {
+            double a = height - snapshot.getY(snapshot.getSpringI(s));
+            double b = height - snapshot.getY(snapshot.getSpringJ(s));
+            setBands(s, Math.min(a, b) - 1, Math.max(a, b) + 1);
+        }
+        springEntries = sort(springCount, springStart, springEntries);
+
+        executor.forRange(bands, bandTask);
+        this.snapshot = null;
+        return pixels;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void ensureItems(int items) {
+        if (lowBand.length < items) {
+            lowBand = new int[Math.max(items, lowBand.length * 2)];
+            highBand = new int[lowBand.length];
+        }
+    }
+
+    /**
+     * remember the bands item touches if it spans the rows low .. high, none if it is off screen or not finite
+     */
+    private void setBands(int item, double low, double high) {
+        if (high >= 0 && low < height) {
+            lowBand[item] = (int) Math.max(0, low) / bandRows;
+            highBand[item] = (int) Math.min(height - 1, high) / bandRows;
+        } else {
+            lowBand[item] = 1;
+            highBand[item] = 0;
+        }
+    }
+
+    /**
+     * counting sort of items 0 .. items - 1 into the bands set for them, in item order within a band
+     *
+     * @return the entries, grown if needed
+     */
+    private int[] sort(int items, int[] start, int[] entries) {
+        Arrays.fill(start, 0);
+        for (int i = 0; i < items; i++) {
+            for (int b = lowBand[i]; b <= highBand[i]; b++) start[b + 1]++;
+        }
+        for (int b = 0; b < bands; b++) {
+            start[b + 1] += start[b];
+        }
+
+        if (entries.length < start[bands]) {
+            entries = new int[Math.max(start[bands], entries.length * 2)];
+        }
+        System.arraycopy(start, 0, cursor, 0, bands);
+        for (int i = 0; i < items; i++) {
+            for (int b = lowBand[i]; b <= highBand[i]; b++) entries[cursor[b]++] = i;
+        }
+        return entries;
+    }
+
+    private void renderBands(int chunk, int from, int to) {
+        for (int b = from; b < to; b++) {
+            renderBand(b);
+        }
+    }
+
+    private void renderBand(int band) {
+        int rowFrom = band * bandRows;
+        int rowTo = Math.min(height, rowFrom + bandRows);
+        Arrays.fill(pixels, rowFrom * width, rowTo * width, 0);
+
+        Snapshot snapshot = this.snapshot;
+        int from = particleStart[band];
+        int to = particleStart[band + 1];
+
+        // particles
+        for (int k = from; k < to; k++) {
+            int i = particleEntries[k];
+            double x = snapshot.getX(i);
+            double y = snapshot.getY(i);
+            if (drawParticle) {
+                double vx = snapshot.getVX(i);
+                double vy = snapshot.getVY(i);
+                double v = Math.sqrt(vx * vx + vy * vy);
+                int color = v >= 1 ? VELOCITY_COLORS[VELOCITY_COLORS.length - 1]
+                        : VELOCITY_COLORS[(int) (v * (VELOCITY_COLORS.length - 1) + 0.5)];
+                splat(particle, x, y, color, rowFrom, rowTo);
+            }
+
+            // interaction range
+            if (drawRadius) {
+                splat(ring, x, y, DrawSurface.BLUE, rowFrom, rowTo);
+            }
+        }
+
+        for (int k = springStart[band]; k < springStart[band + 1]; k++) {
+            int s = springEntries[k];
+            int i = snapshot.getSpringI(s);
+            int j = snapshot.getSpringJ(s);
+            line(snapshot.getX(i), snapshot.getY(i), snapshot.getX(j), snapshot.getY(j), DrawSurface.LIGHTGREEN, 1,
+                    rowFrom, rowTo);
+        }
+
+        if (drawVelocity) {
+            for (int k = from; k < to; k++) {
+                int i = particleEntries[k];
+                splat(dot, snapshot.getX(i), snapshot.getY(i), DrawSurface.RED, rowFrom, rowTo);
+            }
+            for (int k = from; k < to; k++) {
+                int i = particleEntries[k];
+                double x = snapshot.getX(i);
+                double y = snapshot.getY(i);
+                line(x, y, x + snapshot.getVX(i) * stretch, y + snapshot.getVY(i) * stretch, DrawSurface.ORANGE, 2,
+                        rowFrom, rowTo);
+            }
+        }
+    }
+
+    /**
+     * blend the sprite centered at world position (x, y) in color 0xRRGGBB into the rows rowFrom .. rowTo - 1
+     */
+    private void splat(Splat splat, double x, double y, int rgb, int rowFrom, int rowTo) {
+        double column = x;
+        double row = height - y;
+        int baseX = (int) Math.floor(column);
+        int baseY = (int) Math.floor(row);
+        int phase = (int) ((row - baseY) * PHASES) * PHASES + (int) ((column - baseX) * PHASES);
+        int[] rowStart = splat.rowStart[phase];
+        int[] columns = splat.columns[phase];
+        int[] alpha = splat.alpha[phase];
+
+        int left = baseX - splat.half;
+        int top = baseY - splat.half;
+        int r0 = Math.max(top, rowFrom);
+        int r1 = Math.min(top + splat.size, rowTo);
+
+        int red = (rgb >> 16) & 0xFF;
+        int green = (rgb >> 8) & 0xFF;
+        int blue = rgb & 0xFF;
+        for (int r = r0; r < r1; r++) {
+            int p = r * width;
+            for (int e = rowStart[r - top]; e < rowStart[r - top + 1]; e++) {
+                int c = left + columns[e];
+                if (c < 0 || c >= width) continue;
+
+                // source over on premultiplied pixels
+                int a = alpha[e];
+                int inverse = 255 - a;
+                int d = pixels[p + c];
+                pixels[p + c] = (a + divide255((d >>> 24) * inverse)) << 24
+                        | divide255(red * a + ((d >> 16) & 0xFF) * inverse) << 16
+                        | divide255(green * a + ((d >> 8) & 0xFF) * inverse) << 8
+                        | divide255(blue * a + (d & 0xFF) * inverse);
+            }
+        }
+    }
+
+    /**
+     * @return x / 255 rounded, exact for 0 <= x <= 255 * 255
+     */
+    private static int divide255(int x) {
+        x += 128;
+        return (x + (x >> 8)) >> 8;
+    }
+
+    /**
+     * draw an opaque line between two world positions into the rows rowFrom .. rowTo - 1, stamping squares of the
+     * line width along the part of it that falls into those rows
+     */
+    private void line(double x1, double y1, double x2, double y2, int rgb, int lineWidth, int rowFrom, int rowTo) {
+        double ax = x1;
+        double ay = height - y1;
+        double dx = x2 - x1;
+        double dy = (height - y2) - ay;
+
+        // clip the segment to the band, so long or diverged lines cost no more than the band is wide
+        double t0 = 0;
+        double t1 = 1;
+        if (dx != 0) {
+            double left = (-lineWidth - ax) / dx;
+            double right = (width + lineWidth - ax) / dx;
+            t0 = Math.max(t0, Math.min(left, right));
+            t1 = Math.min(t1, Math.max(left, right));
+        } else if (!(ax >= -lineWidth && ax <= width + lineWidth)) {
+            return;
+        }
+        if (dy != 0) {
+            double top = (rowFrom - lineWidth - ay) / dy;
+            double bottom = (rowTo + lineWidth - ay) / dy;
+            t0 = Math.max(t0, Math.min(top, bottom));
+            t1 = Math.min(t1, Math.max(top, bottom));
+        } else if (!(ay >= rowFrom - lineWidth && ay <= rowTo + lineWidth)) {
+            return;
+        }
+        if (!(t0 <= t1)) return;
+
+        int color = 0xFF000000 | rgb;
+        int steps = (int) Math.ceil(Math.max(Math.abs(dx), Math.abs(dy)) * (t1 - t0));
+        for (int k = 0; k <= steps; k++) {
+            double t = steps == 0 ? t0 : t0 + (t1 - t0) * k / steps;
+            int left = (int) Math.floor(ax + dx * t - lineWidth * 0.5 + 0.5);
+            int top = (int) Math.floor(ay + dy * t - lineWidth * 0.5 + 0.5);
+            for (int r = Math.max(top, rowFrom); r < Math.min(top + lineWidth, rowTo); r++) {
+                for (int c = Math.max(left, 0); c < Math.min(left + lineWidth, width); c++) {
+                    pixels[r * width + c] = color;
+                }
+            }
+        }
+    }
+
+    /**
+     * alpha of an antialiased disc or ring for every sub pixel position of its center. Only the pixels it covers are
+     * stored, row by row: the pixels of sprite row r are columns[k] with alpha[k] for k = rowStart[r] ..
+     * rowStart[r + 1] - 1, so a thin ring costs no more than its outline.
+     */
+    private static final class Splat {
+        final double radius;
+        final int half;
+        final int size;
+        final int[][] rowStart;
+        final int[][] columns;
+        final int[][] alpha;
+
+        /**
+         * @param radius outer radius
+         * @param inner inner radius, 0 for a disc
+         */
+        Splat(double radius, double inner, double opacity) {
+            this.radius = radius;
+            half = (int) Math.ceil(radius) + 1;
+            size = 2 * half + 1;
+            rowStart = new int[PHASES * PHASES][size + 1];
+            columns = new int[PHASES * PHASES][];
+            alpha = new int[PHASES * PHASES][];
+
+            int[] c = new int[size * size];
+            int[] a = new int[size * size];
+            for (int phaseY = 0; phaseY < PHASES; phaseY++) {
+                for (int phaseX = 0; phaseX < PHASES; phaseX++) {
+                    // center in sprite pixels, in the middle of the sub pixel range of the phase
+                    double centerX = half + (phaseX + 0.5) / PHASES;
+                    double centerY = half + (phaseY + 0.5) / PHASES;
+                    int phase = phaseY * PHASES + phaseX;
+
+                    int entries = 0;
+                    for (int r = 0; r < size; r++) {
+                        for (int column = 0; column < size; column++) {
+                            int covered = 0;
+                            for (int sy = 0; sy < SAMPLES; sy++) {
+                                for (int sx = 0; sx < SAMPLES; sx++) {
+                                    double ox = column + (sx + 0.5) / SAMPLES - centerX;
+                                    double oy = r + (sy + 0.5) / SAMPLES - centerY;
+                                    double d = Math.sqrt(ox * ox + oy * oy);
+                                    if (d <= radius && d >= inner) covered++;
+                                }
+                            }
+
+                            int value = (int) Math.round(opacity * 255 * covered / (SAMPLES * SAMPLES));
+                            if (value > 0) {
+                                c[entries] = column;
+                                a[entries] = value;
+                                entries++;
+                            }
+                        }
+                        rowStart[phase][r + 1] = entries;
+                    }
+                    columns[phase] = Arrays.copyOf(c, entries);
+                    alpha[phase] = Arrays.copyOf(a, entries);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package simulation;
+
+/**
+ * axis aligned bounding box of an obstacle
+ */
+public final class Bounds {
+    public static final Bounds UNBOUNDED = new Bounds(Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+
+    public final double minX;
+    public final double minY;
+    public final double maxX;
+    public final double maxY;
+
+    public Bounds(double minX, double minY, double maxX, double maxY) {
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    public boolean isBounded() {
+        return minX > Double.NEGATIVE_INFINITY && minY > Double.NEGATIVE_INFINITY
+                && maxX < Double.POSITIVE_INFINITY && maxY < Double.POSITIVE_INFINITY;
+    }
+}
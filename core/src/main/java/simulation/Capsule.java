@@ -0,0 +1,86 @@
+package simulation;
+
+public class Capsule implements Obstacle {
+
+    final double x1;
+    final double y1;
+    final double x2;
+    final double y2;
+    final double R;
+
+    private final double dx;
+    private final double dy;
+
+    private final double dLengthSq;
+
+    public Capsule(double x1, double y1, double x2, double y2, double r) {
+        this.x1 = x1;
+        this.y1 = y1;
+        this.x2 = x2;
+        this.y2 = y2;
+        this.R = r;
+
+        dx = x2 - x1;
+        dy = y2 - y1;
+
+        dLengthSq = dx * dx + dy * dy;
+    }
+
+    @Override
+    public void draw(DrawSurface context) {
+        context.fillOval(x1 - R, y1 - R, 2 * R, 2 * R);
+        context.fillOval(x2 - R, y2 - R, 2 * R, 2 * R);
+
+        double lineWidth = context.getLineWidth();
+        context.setButtLineCap();
+        context.setLineWidth(2 * R);
+        context.strokeLine(x1, y1, x2, y2);
+        context.setLineWidth(lineWidth);
+    }
+
+    @Override
+    public String toString() {
+        return "Capsule(" + x1 + ", " + y1 + ", " + x2 + ", " + y2 + ", " + R + ")";
+    }
+
+    @Override
+    public Bounds getBounds() {
+        return new Bounds(Math.min(x1, x2) - R, Math.min(y1, y2) - R, Math.max(x1, x2) + R, Math.max(y1, y2) + R);
+    }
+
+    @Override
+    public void collide(int[] particles, int from, int to, double[] X, double[] Y, double[] oldX, double[] oldY,
+                        double radius, double friction) {
+        for (int k = from; k < to; k++) {
+            int i = particles[k];
+            double x = X[i];
+            double y = Y[i];
+
+            double t = (dy * (y - y1) - dx * (x1 - x)) / dLengthSq;
+            t = Math.max(Math.min(t, 1), 0);
+            double sx = x1 + t * dx;
+            double sy = y1 + t * dy;
+            double d = Math.sqrt((sx - x) * (sx - x) + (sy - y) * (sy - y));
+            if (d - R >= radius) continue;
+
+            double nx = (x - sx) / d;
+            double ny = (y - sy) / d;
+
+            Obstacle.respond(i, nx, ny, d - R, X, Y, oldX, oldY, radius, friction);
+        }
+    }
+
+    @Override
+    public void handleCollision(double x, double y, CollisionHandler collision) {
+        double t = (dy * (y - y1) - dx * (x1 - x)) / dLengthSq;
+        t = Math.max(Math.min(t, 1), 0);
+        double sx = x1 + t * dx;
+        double sy = y1 + t * dy;
+        double d = Math.sqrt((sx - x) * (sx - x) + (sy - y) * (sy - y));
+
+        double nx = (x - sx) / d;
+        double ny = (y - sy) / d;
+
+        collision.handle(nx, ny, d - R);
+    }
+}
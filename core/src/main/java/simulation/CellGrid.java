@@ -0,0 +1,469 @@
+package simulation;
+
+import gnu.trove.map.hash.TLongIntHashMap;
+
+import java.util.Arrays;
+
+/**
+ * uniform spatial grid stored as a counting sort of particle indices by cell.
+ *
+ * Cells are grouped in lazily allocated 8x8 blocks addressed by a collision free 64 bit key, so the domain is
+ * unbounded. Cells within a block and the blocks themselves are kept in morton order, which keeps spatially
+ * close cells close in the sorted particle array. Particles that did not change their cell are not touched
+ * when the grid is updated.
+ */
+public class CellGrid {
+    private static final int BLOCK_BITS = 3;
+    private static final int BLOCK_SIDE = 1 << BLOCK_BITS;
+    private static final int BLOCK_MASK = BLOCK_SIDE - 1;
+    private static final int BLOCK_CELLS = BLOCK_SIDE * BLOCK_SIDE;
+
+    // digit size of the block sort
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+
+    // cell offset inside a block for (localY << BLOCK_BITS | localX), morton ordered
+    private static final int[] LOCAL_CELL = new int[BLOCK_CELLS];
+
+    static {
+        for (int y = 0; y < BLOCK_SIDE; y++) {
+            for (int x = 0; x < BLOCK_SIDE; x++) {
+                LOCAL_CELL[(y << BLOCK_BITS) | x] = (int) interleave(x, y);
+            }
+        }
+    }
+
+    private double cellSize = Double.NaN;
+
+    // block key -> index of the first cell of this block
+    private final TLongIntHashMap blocks = new TLongIntHashMap(64, 0.5f, Long.MIN_VALUE, -1);
+    private long[] blockKeys = new long[16];
+    private int blockCount = 0;
+    private boolean blocksAdded = false;
+
+    // cell c holds the particles particles[cellStart[c]] .. particles[cellStart[c + 1] - 1]
+    private int[] cellStart = new int[BLOCK_CELLS * 16 + 1];
+
+    private int size = -1;
+    private int[] particles;
+    private int[] slotOf;
+    private int[] cellOf;
+    private int[] cellX;
+    private int[] cellY;
+
+    // scratch, particles that changed their cell during an update
+    private int[] moved;
+    private int[] newCell;
+    private int movedCount;
+    private long movedDistance;
+    private int[] blockParticles = new int[16];
+    private int[] blockRemap = new int[16];
+    private long[] blockOrder = new long[16];
+    private long[] blockSorted = new long[16];
+    private final int[] digitCount = new int[RADIX + 1];
+
+    public CellGrid(int capacity) {
+        ensureCapacity(capacity);
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    public int posToCell(double x) {
+        return (int) Math.floor(x / cellSize);
+    }
+
+    /**
+     * rebin all particles 0 .. count - 1 with the given cell size
+     */
+    public void update(double[] X, double[] Y, int count, double cellSize) {
+        if (reset(count, cellSize)) {
+            for (int i = 0; i < count; i++) {
+                cellX[i] = posToCell(X[i]);
+                cellY[i] = posToCell(Y[i]);
+            }
+            rebuild();
+            return;
+        }
+
+        for (int i = 0; i < count; i++) {
+            track(i, posToCell(X[i]), posToCell(Y[i]));
+        }
+        applyMoves();
+    }
+
+    /**
+     * {@link #update(double[], double[], int, double)} for positions in float storage
+     */
+    public void update(float[] X, float[] Y, int count, double cellSize) {
+        if (reset(count, cellSize)) {
+            for (int i = 0; i < count; i++) {
+                cellX[i] = posToCell(X[i]);
+                cellY[i] = posToCell(Y[i]);
+            }
+            rebuild();
+            return;
+        }
+
+        for (int i = 0; i < count; i++) {
+            track(i, posToCell(X[i]), posToCell(Y[i]));
+        }
+        applyMoves();
+    }
+
+    /**
+     * start an update, dropping all blocks if the cell size or the particle count changed
+     *
+     * @return true if all particles have to be binned again
+     */
+    private boolean reset(int count, double cellSize) {
+        ensureCapacity(count);
+
+        movedCount = 0;
+        movedDistance = 0;
+        blocksAdded = false;
+        if (this.cellSize != cellSize || size != count) {
+            this.cellSize = cellSize;
+            blocks.clear();
+            blockCount = 0;
+            size = count;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * note the new cell of a particle if it changed
+     */
+    private void track(int i, int cx, int cy) {
+        if (cx == cellX[i] && cy == cellY[i]) return;
+
+        cellX[i] = cx;
+        cellY[i] = cy;
+        int cell = allocateCell(cx, cy);
+        moved[movedCount] = i;
+        newCell[movedCount] = cell;
+        movedCount++;
+        movedDistance += Math.abs(cell - cellOf[i]);
+    }
+
+    /**
+     * move the tracked particles, or rebuild if that is cheaper
+     */
+    private void applyMoves() {
+        if (movedCount == 0) return;
+
+        if (blocksAdded || movedCount > size / 8 || movedDistance > 4L * size) {
+            rebuild();
+            return;
+        }
+
+        for (int m = 0; m < movedCount; m++) {
+            move(moved[m], newCell[m]);
+        }
+    }
+
+    /**
+     * @return dense index of the cell or -1 if no particle was ever binned to its block
+     */
+    public int cellIndex(int cx, int cy) {
+        int base = blocks.get(cellKey(cx >> BLOCK_BITS, cy >> BLOCK_BITS));
+        if (base < 0) return -1;
+        return base + LOCAL_CELL[((cy & BLOCK_MASK) << BLOCK_BITS) | (cx & BLOCK_MASK)];
+    }
+
+    public int cellStart(int cell) {
+        return cellStart[cell];
+    }
+
+    public int cellEnd(int cell) {
+        return cellStart[cell + 1];
+    }
+
+    public int particleAt(int slot) {
+        return particles[slot];
+    }
+
+    public int cellX(int particle) {
+        return cellX[particle];
+    }
+
+    public int cellY(int particle) {
+        return cellY[particle];
+    }
+
+    /**
+     * forget the binning, e.g. after the particles were permuted; the next update rebuilds the grid
+     */
+    public void invalidate() {
+        size = -1;
+    }
+
+    /**
+     * append the binning as it is for a checkpoint, since updates only move the particles that changed their cell,
+     * the order within a cell depends on all earlier updates
+     */
+    void encode(Checkpoint.Encoder out) {
+        out.putDouble(cellSize);
+        out.putInt(size);
+        if (size < 0) return;
+
+        out.putInt(blockCount);
+        for (int b = 0; b < blockCount; b++) {
+            out.putLong(blockKeys[b]);
+        }
+        out.putInts(cellStart, cellCount() + 1);
+        for (int[] values : new int[][] { particles, slotOf, cellOf, cellX, cellY }) {
+            out.putInts(values, size);
+        }
+    }
+
+    /**
+     * read a binning appended by {@link #encode}
+     */
+    void decode(Checkpoint.Decoder in) {
+        cellSize = in.getDouble();
+        int size = in.getInt();
+        ensureCapacity(size);
+        this.size = size;
+        if (size < 0) return;
+
+        blocks.clear();
+        blockCount = in.getInt();
+        if (blockKeys.length < blockCount) {
+            blockKeys = new long[blockCount];
+        }
+        // block b always starts at cell b * BLOCK_CELLS
+        for (int b = 0; b < blockCount; b++) {
+            blockKeys[b] = in.getLong();
+            blocks.put(blockKeys[b], b * BLOCK_CELLS);
+        }
+        ensureCells(cellCount());
+        in.getInts(cellStart);
+        for (int[] values : new int[][] { particles, slotOf, cellOf, cellX, cellY }) {
+            in.getInts(values);
+        }
+    }
+
+    public int cellCount() {
+        return blockCount * BLOCK_CELLS;
+    }
+
+    public int size() {
+        return Math.max(size, 0);
+    }
+
+    /**
+     * @return collision free key of an integer cell (or block) coordinate
+     */
+    public static long cellKey(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFF_FFFFL);
+    }
+
+    /**
+     * bin all particles again by their current cellX / cellY
+     */
+    private void rebuild() {
+        // bin to blocks, allocating missing ones
+        for (int i = 0; i < size; i++) {
+            cellOf[i] = allocateCell(cellX[i], cellY[i]) >> (2 * BLOCK_BITS);
+        }
+
+        // drop empty blocks and sort the remaining ones in morton order
+        if (blockParticles.length < blockCount) {
+            blockParticles = new int[blockKeys.length];
+            blockRemap = new int[blockKeys.length];
+            blockOrder = new long[blockKeys.length];
+            blockSorted = new long[blockKeys.length];
+        }
+        Arrays.fill(blockParticles, 0, blockCount, 0);
+        for (int i = 0; i < size; i++) {
+            blockParticles[cellOf[i]]++;
+        }
+
+        int used = 0;
+        for (int b = 0; b < blockCount; b++) {
+            if (blockParticles[b] > 0) {
+                blockOrder[used++] = b;
+            }
+        }
+        sortByMorton(used);
+
+        blocks.clear();
+        for (int b = 0; b < used; b++) {
+            int old = (int) blockOrder[b];
+            blockRemap[old] = b;
+            blockOrder[b] = blockKeys[old];
+        }
+        for (int b = 0; b < used; b++) {
+            blockKeys[b] = blockOrder[b];
+            blocks.put(blockKeys[b], b * BLOCK_CELLS);
+        }
+        blockCount = used;
+
+        // counting sort of all particles by cell
+        int cells = blockCount * BLOCK_CELLS;
+        ensureCells(cells);
+        Arrays.fill(cellStart, 0, cells + 1, 0);
+        for (int i = 0; i < size; i++) {
+            int cell = blockRemap[cellOf[i]] * BLOCK_CELLS
+                    + LOCAL_CELL[((cellY[i] & BLOCK_MASK) << BLOCK_BITS) | (cellX[i] & BLOCK_MASK)];
+            cellOf[i] = cell;
+            cellStart[cell + 1]++;
+        }
+        for (int c = 0; c < cells; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        for (int i = 0; i < size; i++) {
+            int slot = cellStart[cellOf[i]]++;
+            particles[slot] = i;
+            slotOf[i] = slot;
+        }
+        for (int c = cells; c > 0; c--) {
+            cellStart[c] = cellStart[c - 1];
+        }
+        cellStart[0] = 0;
+    }
+
+    /**
+     * move a particle to another cell by shifting the boundaries of all cells in between
+     */
+    private void move(int particle, int to) {
+        int from = cellOf[particle];
+
+        if (from < to) {
+            for (int c = from; c < to; c++) {
+                swap(slotOf[particle], cellStart[c + 1] - 1);
+                cellStart[c + 1]--;
+            }
+        } else {
+            for (int c = from; c > to; c--) {
+                swap(slotOf[particle], cellStart[c]);
+                cellStart[c]++;
+            }
+        }
+
+        cellOf[particle] = to;
+    }
+
+    private void swap(int slotA, int slotB) {
+        int a = particles[slotA];
+        int b = particles[slotB];
+        particles[slotA] = b;
+        particles[slotB] = a;
+        slotOf[a] = slotB;
+        slotOf[b] = slotA;
+    }
+
+    private int allocateCell(int cx, int cy) {
+        long key = cellKey(cx >> BLOCK_BITS, cy >> BLOCK_BITS);
+        int base = blocks.get(key);
+
+        if (base < 0) {
+            if (blockCount == blockKeys.length) {
+                blockKeys = Arrays.copyOf(blockKeys, blockCount * 2);
+            }
+            base = blockCount * BLOCK_CELLS;
+            blockKeys[blockCount++] = key;
+            blocks.put(key, base);
+
+            // new cells are empty and start behind all particles
+            ensureCells(base + BLOCK_CELLS);
+            Arrays.fill(cellStart, base + 1, base + BLOCK_CELLS + 1, cellStart[base]);
+            blocksAdded = true;
+        }
+
+        return base + LOCAL_CELL[((cy & BLOCK_MASK) << BLOCK_BITS) | (cx & BLOCK_MASK)];
+    }
+
+    private void sortByMorton(int count) {
+        // pack (morton code of block, block index) so a plain sort orders the blocks
+        long[] order = blockOrder;
+        for (int b = 0; b < count; b++) {
+            long key = blockKeys[(int) order[b]];
+            int bx = (int) (key >> 32);
+            int by = (int) key;
+            order[b] = morton(bx, by) << 24 | order[b];
+        }
+        radixSort(count);
+        for (int b = 0; b < count; b++) {
+            order[b] &= 0xFF_FFFF;
+        }
+    }
+
+    /**
+     * sort blockOrder[0 .. count - 1] as unsigned values. Unlike Arrays.sort this allocates no merge buffers.
+     */
+    private void radixSort(int count) {
+        if (count == 0) return;
+
+        long[] from = blockOrder;
+        long[] to = blockSorted;
+        for (int shift = 0; shift < Long.SIZE; shift += RADIX_BITS) {
+            Arrays.fill(digitCount, 0);
+            for (int b = 0; b < count; b++) {
+                digitCount[digit(from[b], shift) + 1]++;
+            }
+            // all keys share this digit
+            if (digitCount[digit(from[0], shift) + 1] == count) continue;
+
+            for (int d = 0; d < RADIX; d++) {
+                digitCount[d + 1] += digitCount[d];
+            }
+            for (int b = 0; b < count; b++) {
+                to[digitCount[digit(from[b], shift)]++] = from[b];
+            }
+
+            long[] swap = from;
+            from = to;
+            to = swap;
+        }
+
+        if (from != blockOrder) {
+            System.arraycopy(from, 0, blockOrder, 0, count);
+        }
+    }
+
+    private static int digit(long value, int shift) {
+        return (int) (value >>> shift) & (RADIX - 1);
+    }
+
+    private static long morton(int x, int y) {
+        // 19 bits of x and y around the origin, leaving room for the block index
+        return interleave((x + (1 << 18)) & 0x7_FFFF, (y + (1 << 18)) & 0x7_FFFF);
+    }
+
+    static long interleave(int x, int y) {
+        return spread(x) | (spread(y) << 1);
+    }
+
+    private static long spread(int v) {
+        long x = v & 0xFFFF_FFFFL;
+        x = (x | (x << 16)) & 0x0000_FFFF_0000_FFFFL;
+        x = (x | (x << 8)) & 0x00FF_00FF_00FF_00FFL;
+        x = (x | (x << 4)) & 0x0F0F_0F0F_0F0F_0F0FL;
+        x = (x | (x << 2)) & 0x3333_3333_3333_3333L;
+        x = (x | (x << 1)) & 0x5555_5555_5555_5555L;
+        return x;
+    }
+
+    private void ensureCells(int cells) {
+        if (cellStart.length < cells + 1) {
+            cellStart = Arrays.copyOf(cellStart, Math.max(cells + 1, cellStart.length * 2));
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (particles != null && particles.length >= capacity) return;
+
+        particles = new int[capacity];
+        slotOf = new int[capacity];
+        cellOf = new int[capacity];
+        cellX = new int[capacity];
+        cellY = new int[capacity];
+        moved = new int[capacity];
+        newCell = new int[capacity];
+        size = -1;
+    }
+}
@@ -0,0 +1,326 @@
+package simulation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * the complete state of a simulation in a versioned binary format, taken by {@link FluidNew#checkpoint()} and
+ * turned back into a simulation by {@link FluidNew#restore(Checkpoint)}, which continues bit by bit like the one it
+ * was taken from.
+ *
+ * a checkpoint is already encoded when it is taken, so writing it only copies bytes and can run on any thread.
+ * Files are written and read through memory mappings, a restore copies the particle arrays straight from the mapped
+ * file into the new simulation.
+ *
+ * the format is little endian: the magic number and version, then capacity and particle count, the constants, the
+ * step counters and random state, the obstacles, sinks, absorbers and emitters, the particle arrays, the neighbour
+ * list with its springs and the grid binning. Arrays are prefixed by their length, -1 for a missing one. The
+ * particle arrays and the positions the neighbour list was built at are stored as doubles or floats, in the storage
+ * precision of the simulation.
+ */
+public final class Checkpoint {
+    static final int MAGIC = 0x53504846;
+    static final int VERSION = 3;
+
+    // obstacle types
+    private static final int WALL = 1;
+    private static final int SPHERE = 2;
+    private static final int CAPSULE = 3;
+    private static final int SINK = 4;
+    private static final int SOURCE_AND_SINK = 5;
+
+    private final ByteBuffer data;
+
+    private Checkpoint(ByteBuffer data) {
+        this.data = data;
+    }
+
+    /**
+     * map a checkpoint file
+     *
+     * @throws IOException if the file can not be read or is no checkpoint of a supported version
+     */
+    public static Checkpoint read(Path path) throws IOException {
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        data.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (data.limit() < 2 * Integer.BYTES || data.getInt(0) != MAGIC) {
+            throw new IOException(path + " is no checkpoint");
+        }
+        int version = data.getInt(Integer.BYTES);
+        if (version != VERSION) {
+            throw new IOException(path + " has checkpoint version " + version + ", only " + VERSION + " is supported");
+        }
+        return new Checkpoint(data);
+    }
+
+    /**
+     * write to a temporary file next to path through a memory mapping and move it over path, so an interrupted
+     * write never leaves a broken checkpoint behind
+     */
+    public void write(Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, data.limit());
+            mapped.put(data.duplicate().position(0));
+            mapped.force();
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return size of the encoded checkpoint in bytes
+     */
+    public long getSize() {
+        return data.limit();
+    }
+
+    /**
+     * @return number of live particles
+     */
+    public int getParticleCount() {
+        return data.getInt(3 * Integer.BYTES);
+    }
+
+    Decoder decoder() {
+        Decoder in = new Decoder(data.duplicate().order(ByteOrder.LITTLE_ENDIAN));
+        in.getInt();
+        in.getInt();
+        return in;
+    }
+
+    static Encoder encoder(int capacity) {
+        Encoder out = new Encoder(capacity);
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        return out;
+    }
+
+    /**
+     * appends values to a growing buffer
+     */
+    static final class Encoder {
+        private ByteBuffer buffer;
+
+        private Encoder(int capacity) {
+            buffer = ByteBuffer.allocate(Math.max(capacity, 64)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private void ensure(long bytes) {
+            if (buffer.remaining() >= bytes) return;
+
+            long capacity = Math.max(buffer.capacity() * 2L, buffer.position() + bytes);
+            if (capacity > Integer.MAX_VALUE) throw new IllegalStateException("checkpoint larger than 2 GB");
+            ByteBuffer grown = ByteBuffer.allocate((int) capacity).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+
+        void putInt(int value) {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putDouble(double value) {
+            ensure(Double.BYTES);
+            buffer.putDouble(value);
+        }
+
+        /**
+         * the first length values, or a missing array if values is null
+         */
+        void putDoubles(double[] values, int length) {
+            if (values == null) {
+                putInt(-1);
+                return;
+            }
+            putInt(length);
+            ensure((long) length * Double.BYTES);
+            buffer.asDoubleBuffer().put(values, 0, length);
+            buffer.position(buffer.position() + length * Double.BYTES);
+        }
+
+        /**
+         * the first length values, stored as floats in float storage
+         */
+        void putFloats(float[] values, int length) {
+            putInt(length);
+            ensure((long) length * Float.BYTES);
+            buffer.asFloatBuffer().put(values, 0, length);
+            buffer.position(buffer.position() + length * Float.BYTES);
+        }
+
+        void putInts(int[] values, int length) {
+            putInt(length);
+            ensure((long) length * Integer.BYTES);
+            buffer.asIntBuffer().put(values, 0, length);
+            buffer.position(buffer.position() + length * Integer.BYTES);
+        }
+
+        void putObstacle(Obstacle obstacle) {
+            if (obstacle instanceof Wall) {
+                Wall wall = (Wall) obstacle;
+                putInt(WALL);
+                putDouble(wall.sx);
+                putDouble(wall.sy);
+                putDouble(wall.tx);
+                putDouble(wall.ty);
+            } else if (obstacle instanceof Sphere) {
+                Sphere sphere = (Sphere) obstacle;
+                putInt(SPHERE);
+                putDouble(sphere.X);
+                putDouble(sphere.Y);
+                putDouble(sphere.R);
+            } else if (obstacle instanceof Capsule) {
+                Capsule capsule = (Capsule) obstacle;
+                putInt(CAPSULE);
+                putDouble(capsule.x1);
+                putDouble(capsule.y1);
+                putDouble(capsule.x2);
+                putDouble(capsule.y2);
+                putDouble(capsule.R);
+            } else if (obstacle instanceof Sink) {
+                putInt(SINK);
+                putObstacle(((Sink) obstacle).collider);
+            } else if (obstacle instanceof SourceAndSink) {
+                SourceAndSink sink = (SourceAndSink) obstacle;
+                putInt(SOURCE_AND_SINK);
+                putObstacle(sink.sinkCollider);
+                putDouble(sink.sourceX);
+                putDouble(sink.sourceY);
+                putDouble(sink.sourceRadius);
+                putDouble(sink.vX);
+                putDouble(sink.vY);
+            } else {
+                throw new IllegalArgumentException("can not checkpoint obstacle " + obstacle);
+            }
+        }
+
+        void putEmitter(Emitter emitter) {
+            putDouble(emitter.x);
+            putDouble(emitter.y);
+            putDouble(emitter.radius);
+            putDouble(emitter.rate);
+            putDouble(emitter.vX);
+            putDouble(emitter.vY);
+            putDouble(emitter.pending);
+        }
+
+        Checkpoint finish() {
+            buffer.flip();
+            return new Checkpoint(buffer.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+
+    /**
+     * reads values in the order an {@link Encoder} appended them
+     */
+    static final class Decoder {
+        private final ByteBuffer buffer;
+
+        private Decoder(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        int getInt() {
+            return buffer.getInt();
+        }
+
+        long getLong() {
+            return buffer.getLong();
+        }
+
+        double getDouble() {
+            return buffer.getDouble();
+        }
+
+        /**
+         * @return length of the next array, -1 if it is missing
+         */
+        int peekLength() {
+            return buffer.getInt(buffer.position());
+        }
+
+        /**
+         * read the next array into the start of values
+         *
+         * @return its length, -1 if it is missing
+         */
+        int getDoubles(double[] values) {
+            int length = getInt();
+            if (length < 0) return length;
+
+            buffer.asDoubleBuffer().get(values, 0, length);
+            buffer.position(buffer.position() + length * Double.BYTES);
+            return length;
+        }
+
+        int getFloats(float[] values) {
+            int length = getInt();
+            buffer.asFloatBuffer().get(values, 0, length);
+            buffer.position(buffer.position() + length * Float.BYTES);
+            return length;
+        }
+
+        int getInts(int[] values) {
+            int length = getInt();
+            buffer.asIntBuffer().get(values, 0, length);
+            buffer.position(buffer.position() + length * Integer.BYTES);
+            return length;
+        }
+
+        double[] getDoubles() {
+            double[] values = new double[peekLength()];
+            getDoubles(values);
+            return values;
+        }
+
+        int[] getInts() {
+            int[] values = new int[peekLength()];
+            getInts(values);
+            return values;
+        }
+
+        Obstacle getObstacle() {
+            int type = getInt();
+            switch (type) {
+                case WALL:
+                    return Wall.normalized(getDouble(), getDouble(), getDouble(), getDouble());
+                case SPHERE:
+                    return new Sphere(getDouble(), getDouble(), getDouble());
+                case CAPSULE:
+                    return new Capsule(getDouble(), getDouble(), getDouble(), getDouble(), getDouble());
+                case SINK:
+                    return new Sink(getObstacle());
+                case SOURCE_AND_SINK:
+                    return new SourceAndSink(getObstacle(), getDouble(), getDouble(), getDouble(), getDouble(),
+                            getDouble());
+                default:
+                    throw new IllegalStateException("unknown obstacle type " + type);
+            }
+        }
+
+        Emitter getEmitter() {
+            Emitter emitter = new Emitter(getDouble(), getDouble(), getDouble(), getDouble(), getDouble(), getDouble());
+            emitter.pending = getDouble();
+            return emitter;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package simulation;
+
+/**
+ * drawing primitives the simulation renders itself with, implemented by the user interface
+ */
+public interface DrawSurface {
+    int BLACK = 0x000000;
+    int BLUE = 0x0000FF;
+    int GREY = 0x808080;
+    int LIGHTGREEN = 0x90EE90;
+    int MEDIUMBLUE = 0x0000CD;
+    int MEDIUMORCHID = 0xBA55D3;
+    int ORANGE = 0xFFA500;
+    int RED = 0xFF0000;
+
+    /**
+     * @param rgb color as 0xRRGGBB
+     */
+    void setFill(int rgb, double opacity);
+
+    void setStroke(int rgb, double opacity);
+
+    default void setFill(int rgb) {
+        setFill(rgb, 1);
+    }
+
+    default void setStroke(int rgb) {
+        setStroke(rgb, 1);
+    }
+
+    double getLineWidth();
+
+    void setLineWidth(double width);
+
+    /**
+     * end lines flat at their end points
+     */
+    void setButtLineCap();
+
+    void fillOval(double x, double y, double width, double height);
+
+    void strokeOval(double x, double y, double width, double height);
+
+    void strokeLine(double x1, double y1, double x2, double y2);
+
+    void strokeRect(double x, double y, double width, double height);
+
+    void fillPolygon(double[] xs, double[] ys, int points);
+
+    void fillText(String text, double x, double y);
+
+    void save();
+
+    void restore();
+
+    void scale(double x, double y);
+
+    /**
+     * linear interpolation between two 0xRRGGBB colors, t is clamped to [0, 1]
+     */
+    static int interpolate(int from, int to, double t) {
+        if (t <= 0) return from;
+        if (t >= 1) return to;
+
+        int rgb = 0;
+        for (int shift = 16; shift >= 0; shift -= 8) {
+            int a = (from >> shift) & 0xFF;
+            int b = (to >> shift) & 0xFF;
+            rgb |= ((int) Math.round(a + (b - a) * t) & 0xFF) << shift;
+        }
+        return rgb;
+    }
+}
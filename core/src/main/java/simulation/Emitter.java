@@ -0,0 +1,33 @@
+package simulation;
+
+/**
+ * spawns particles at a constant rate, spread over a square around its center
+ */
+public class Emitter {
+    public final double x;
+    public final double y;
+    public final double radius;
+    public final double rate;
+    public final double vX;
+    public final double vY;
+
+    // fraction of a particle carried over to the next step
+    double pending = 0;
+
+    /**
+     * @param rate particles per unit of simulated time
+     */
+    public Emitter(double x, double y, double radius, double rate, double vX, double vY) {
+        this.x = x;
+        this.y = y;
+        this.radius = radius;
+        this.rate = rate;
+        this.vX = vX;
+        this.vY = vY;
+    }
+
+    public void draw(DrawSurface context) {
+        context.setStroke(DrawSurface.BLUE);
+        context.strokeRect(x - radius, y - radius, 2 * radius, 2 * radius);
+    }
+}
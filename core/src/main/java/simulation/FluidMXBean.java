@@ -0,0 +1,100 @@
+package simulation;
+
+/**
+ * management interface of a running simulation. Readouts are sampled without stopping the simulation, parameter
+ * changes are applied before the next step.
+ */
+public interface FluidMXBean {
+    /**
+     * live particles at the end of the last step. This and the grid, neighbour and sleep statistics below are sampled
+     * at the end of each step
+     */
+    int getParticleCount();
+
+    long getSteps();
+
+    /**
+     * step latency percentiles over the last steps
+     */
+    double getStepLatencyP50Millis();
+
+    double getStepLatencyP90Millis();
+
+    double getStepLatencyP99Millis();
+
+    double getStepLatencyMaxMillis();
+
+    /**
+     * particle updates per wall-clock second spent stepping, based on the mean latency of the last steps
+     */
+    double getParticlesPerSecond();
+
+    /**
+     * neighbour list entries per particle, including the pairs within the verlet skin, NaN without particles
+     */
+    double getAverageNeighbors();
+
+    /**
+     * allocated grid cells, including the empty cells of partially filled blocks
+     */
+    int getGridCells();
+
+    int getOccupiedGridCells();
+
+    /**
+     * particles per occupied grid cell
+     */
+    double getGridOccupancy();
+
+    int getSpringCount();
+
+    /**
+     * spring slots available without growing the neighbour list
+     */
+    int getSpringTableCapacity();
+
+    /**
+     * fraction of the particles not asleep, 1 unless sleeping is enabled
+     */
+    double getActiveFraction();
+
+    double getH();
+
+    void setH(double h);
+
+    double getK();
+
+    void setK(double k);
+
+    double getKNear();
+
+    void setKNear(double kNear);
+
+    double getSigma();
+
+    void setSigma(double sigma);
+
+    double getBeta();
+
+    void setBeta(double beta);
+
+    double getAlpha();
+
+    void setAlpha(double alpha);
+
+    double getGamma();
+
+    void setGamma(double gamma);
+
+    double getMu();
+
+    void setMu(double mu);
+
+    boolean isStabilization();
+
+    void setStabilization(boolean stabilization);
+
+    boolean isSleeping();
+
+    void setSleeping(boolean sleeping);
+}
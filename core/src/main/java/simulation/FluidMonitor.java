@@ -0,0 +1,217 @@
+package simulation;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * exposes a simulation to JMX, e.g. for JConsole
+ */
+public class FluidMonitor implements FluidMXBean {
+    private final FluidNew fluid;
+
+    public FluidMonitor(FluidNew fluid) {
+        this.fluid = fluid;
+    }
+
+    /**
+     * register a monitor of the simulation with the platform MBean server as simulation:type=FluidNew,name=[name]
+     */
+    public static ObjectName register(FluidNew fluid, String name) {
+        try {
+            ObjectName objectName = new ObjectName("simulation:type=FluidNew,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new FluidMonitor(fluid), objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("could not register the simulation monitor", e);
+        }
+    }
+
+    // the particle count, the grid, the neighbour list and the sleep state change during a step, their statistics are
+    // sampled at the end of each, see FluidNew.sampleStatistics
+
+    @Override
+    public int getParticleCount() {
+        return fluid.sampledCount;
+    }
+
+    @Override
+    public long getSteps() {
+        return fluid.getSteps();
+    }
+
+    @Override
+    public double getStepLatencyP50Millis() {
+        return percentile(0.5);
+    }
+
+    @Override
+    public double getStepLatencyP90Millis() {
+        return percentile(0.9);
+    }
+
+    @Override
+    public double getStepLatencyP99Millis() {
+        return percentile(0.99);
+    }
+
+    @Override
+    public double getStepLatencyMaxMillis() {
+        return percentile(1);
+    }
+
+    private double percentile(double p) {
+        long[] nanos = fluid.recentStepNanos();
+        if (nanos.length == 0) return Double.NaN;
+
+        Arrays.sort(nanos);
+        int index = (int) Math.ceil(p * nanos.length) - 1;
+        return nanos[Math.max(index, 0)] / 1e6;
+    }
+
+    @Override
+    public double getParticlesPerSecond() {
+        long[] nanos = fluid.recentStepNanos();
+        if (nanos.length == 0) return Double.NaN;
+
+        double mean = Arrays.stream(nanos).average().getAsDouble();
+        return fluid.sampledCount * 1e9 / mean;
+    }
+
+    @Override
+    public double getAverageNeighbors() {
+        return fluid.averageNeighbors;
+    }
+
+    @Override
+    public int getGridCells() {
+        return fluid.gridCells;
+    }
+
+    @Override
+    public int getOccupiedGridCells() {
+        return fluid.occupiedGridCells;
+    }
+
+    @Override
+    public double getGridOccupancy() {
+        return fluid.gridOccupancy;
+    }
+
+    @Override
+    public int getSpringCount() {
+        return fluid.springCount;
+    }
+
+    @Override
+    public int getSpringTableCapacity() {
+        return fluid.springCapacity;
+    }
+
+    @Override
+    public double getActiveFraction() {
+        return fluid.activeFraction;
+    }
+
+    @Override
+    public double getH() {
+        return fluid.H;
+    }
+
+    @Override
+    public void setH(double h) {
+        if (!(h > 0)) throw new IllegalArgumentException("H must be positive");
+        fluid.atStepBoundary(() -> fluid.H = h);
+    }
+
+    @Override
+    public double getK() {
+        return fluid.K;
+    }
+
+    @Override
+    public void setK(double k) {
+        fluid.atStepBoundary(() -> fluid.K = k);
+    }
+
+    @Override
+    public double getKNear() {
+        return fluid.K_NEAR;
+    }
+
+    @Override
+    public void setKNear(double kNear) {
+        fluid.atStepBoundary(() -> fluid.K_NEAR = kNear);
+    }
+
+    @Override
+    public double getSigma() {
+        return fluid.SIGMA;
+    }
+
+    @Override
+    public void setSigma(double sigma) {
+        fluid.atStepBoundary(() -> fluid.SIGMA = sigma);
+    }
+
+    @Override
+    public double getBeta() {
+        return fluid.BETA;
+    }
+
+    @Override
+    public void setBeta(double beta) {
+        fluid.atStepBoundary(() -> fluid.BETA = beta);
+    }
+
+    @Override
+    public double getAlpha() {
+        return fluid.ALPHA;
+    }
+
+    @Override
+    public void setAlpha(double alpha) {
+        fluid.atStepBoundary(() -> fluid.ALPHA = alpha);
+    }
+
+    @Override
+    public double getGamma() {
+        return fluid.GAMMA;
+    }
+
+    @Override
+    public void setGamma(double gamma) {
+        fluid.atStepBoundary(() -> fluid.GAMMA = gamma);
+    }
+
+    @Override
+    public double getMu() {
+        return fluid.MU;
+    }
+
+    @Override
+    public void setMu(double mu) {
+        fluid.atStepBoundary(() -> fluid.MU = mu);
+    }
+
+    @Override
+    public boolean isStabilization() {
+        return fluid.stabilization;
+    }
+
+    @Override
+    public void setStabilization(boolean stabilization) {
+        fluid.atStepBoundary(() -> fluid.stabilization = stabilization);
+    }
+
+    @Override
+    public boolean isSleeping() {
+        return fluid.isSleeping();
+    }
+
+    @Override
+    public void setSleeping(boolean sleeping) {
+        fluid.atStepBoundary(() -> fluid.setSleeping(sleeping));
+    }
+}
@@ -0,0 +1,2198 @@
+package simulation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class FluidNew {
+    /*******************************
+     * draw settings               *
+     *******************************/
+    // toggled by the user interface while other threads draw
+    public volatile boolean drawSprings = true;
+    public volatile boolean drawVelocity = true;
+    public volatile boolean drawInteractionRadius = true;
+    public volatile boolean drawParticle = true;
+
+    /*******************************
+     * simulation constants        *
+     *******************************/
+    double H = 15;
+    double K = 100;
+    double K_NEAR = 10_000;
+    private double K_SPRING = 1_000;
+    private boolean elastic = false;
+    private double P0 = 1;
+
+    // viscosity
+    double SIGMA = 100;  // increase for high viscous fluid; 0 for water
+    double BETA = 10;
+
+    // plasticity
+    double ALPHA = 100;    // plasticity constant
+    double GAMMA = 1;    // yield ratio
+
+    // collision friction [0 - 1]
+    double MU = 0.5;
+
+    private double RADIUS = H / 3;
+    double DRAW_RADIUS = RADIUS * 2;
+
+    private double GRAVITY = -2;
+
+    private double DELTA_T = 0.015;
+
+    // simulated time of a full step, the delta_t callers pass to simulate
+    private double STEP_DURATION = 0.0333333;
+
+    // adaptive sub-steps keep the distance a particle moves per sub-step below CFL * H, as fractions of a full step.
+    // Calm fluid takes up to two full steps at once. The density relaxation is tuned to full steps, resting fluid
+    // jitters a little more on longer ones and capping it instead compresses the fluid.
+    private double CFL = 0.4;
+    private double MIN_STEP_SCALE = 1.0 / 16;
+    private double MAX_STEP_SCALE = 2;
+
+    private double MAX_VELOCITY = 100;
+    boolean stabilization = true;
+    double VELOCITY_STRETCH = 10;
+
+    // verlet skin of the neighbour list as fraction of H
+    private double SKIN = 0.25;
+
+    /*******************************
+     * particle data               *
+     *******************************/
+    private final int maxParticleCount;
+
+    // particles 0 .. count - 1 are alive, the remaining slots are free
+    private int count;
+
+    // slots killed during the current step, reused by spawns and compacted at the end of the step
+    private final boolean[] dead;
+    private final int[] freeSlots;
+    private int freeCount = 0;
+
+    // particle state in double or float storage, see setStorage
+    private boolean single = false;
+    private final ParticleArray X;
+    private final ParticleArray Y;
+    private final ParticleArray oldX;
+    private final ParticleArray oldY;
+    private final ParticleArray vX;
+    private final ParticleArray vY;
+
+    // stable particle ids, index -> id and id -> index
+    private final int[] idOf;
+    private final int[] indexOf;
+
+    final CellGrid grid;
+    final NeighborList neighbors;
+
+
+    private final List<Obstacle> obstacles = new ArrayList<>();
+    private final List<SourceAndSink> sinks = new ArrayList<>();
+    private final List<Sink> absorbers = new ArrayList<>();
+    private final List<Emitter> emitters = new ArrayList<>();
+
+    // broadphase of the lists above, built on the first step, the lists are fixed once a scene runs
+    private ObstacleIndex<Obstacle> obstacleIndex;
+    private ObstacleIndex<SourceAndSink> sinkIndex;
+    private ObstacleIndex<Sink> absorberIndex;
+
+    // bounded obstacles baked into a distance field, used instead of the obstacles when the cell size is set
+    private double obstacleFieldCellSize = 0;
+    private double obstacleFieldMaxError;
+    private SignedDistanceField obstacleField;
+
+    private final SeededRandom random = new SeededRandom(42);
+
+    private ExecutionMode executionMode = ExecutionMode.SEQUENTIAL;
+    private ParallelExecutor executor;
+    private RelaxationScratch[] relaxationScratch;
+
+    private int relaxationColor;
+    private int pairColor;
+    private PairKernel pairKernel;
+    private double springFactor;
+
+    private final long[] phaseNanos = new long[Phase.values().length];
+
+    // durations of the last steps as a ring buffer, steps is the total number of recorded steps. FluidMonitor reads
+    // both from other threads, steps is written after the duration so the durations it counts are visible
+    static final int LATENCY_WINDOW = 1024;
+    private final long[] stepNanos = new long[LATENCY_WINDOW];
+    private volatile long steps = 0;
+
+    // grid and neighbour list statistics sampled at the end of every step, FluidMonitor reads them from other threads
+    volatile double averageNeighbors = Double.NaN;
+    volatile int gridCells;
+    volatile int occupiedGridCells;
+    volatile double gridOccupancy = Double.NaN;
+    volatile int springCount;
+    volatile int springCapacity;
+    volatile int sampledCount;
+    volatile double activeFraction = 1;
+
+    // changes from other threads, applied before the next step
+    private final ConcurrentLinkedQueue<Runnable> pendingChanges = new ConcurrentLinkedQueue<>();
+
+    // flight recorder events, reused for every phase and step, begin() and end() set their time stamps again
+    private final PhaseEvent phaseEvent = new PhaseEvent();
+    private final StepEvent stepEvent = new StepEvent();
+
+    private final ParallelExecutor.RangeTask pairTask = this::pairCells;
+    private final PairKernel viscosityKernel = this::viscosityImpulse;
+    private final PairKernel springKernel = this::springDisplacement;
+
+    private final ParallelExecutor.RangeTask relaxationTask = this::relaxCells;
+
+    // sink and absorber collision handlers, created once and told the particle and sink through these fields
+    private int handledParticle;
+    private SourceAndSink handledSink;
+    private final Obstacle.CollisionHandler sinkHandler = this::recycle;
+    private final Obstacle.CollisionHandler absorberHandler = this::absorbHandled;
+
+    // a particle in float storage as doubles, for the distance field collision response
+    private final double[] contactX = new double[1];
+    private final double[] contactY = new double[1];
+    private final double[] contactOldX = new double[1];
+    private final double[] contactOldY = new double[1];
+
+    private int frames = 0;
+
+    // fraction of a full step the current step advances, velocities are per full step
+    private double stepScale = 1;
+
+    // velocities after the last adaptive sub-step and the largest acceleration during it per full step squared, NaN
+    // before the first one
+    private ParticleArray previousVX;
+    private ParticleArray previousVY;
+    private double acceleration = Double.NaN;
+    private int subSteps;
+
+    // reorder particles along the grid's morton order every n frames, 0 to disable
+    private int reorderInterval = 64;
+
+    // particles that stay within SLEEP_DRIFT * H of where they came to rest, slower than SLEEP_SPEED * H per full step
+    // and with a density changing by less than SLEEP_DENSITY_CHANGE per step, fall asleep after SLEEP_FRAMES steps.
+    // Sleeping particles keep their position until a speed above WAKE_SPEED * H, a disturbed neighbour or an external
+    // force wakes them.
+    private boolean sleeping = false;
+    private double SLEEP_DRIFT = 0.1;
+    private double SLEEP_SPEED = 0.1;
+    private double WAKE_SPEED = 0.1;
+    private double SLEEP_DENSITY_CHANGE = 0.05;
+    private int SLEEP_FRAMES = 30;
+
+    // steps a particle has been at rest, asleep from SLEEP_FRAMES on, -1 if its density changed in this step
+    private final int[] restFrames;
+    private final ParticleArray restX;
+    private final ParticleArray restY;
+    private final ParticleArray lastDensity;
+    private int sleepingCount;
+
+    // particles awake in this step in index order, set up after viscosity
+    private final int[] awake;
+    private int awakeCount;
+
+    private final double[] reorderTmp;
+    private final int[] reorderIndex;
+
+    public FluidNew(int maxParticleCount) {
+        this.maxParticleCount = maxParticleCount;
+        count = maxParticleCount;
+        dead = new boolean[maxParticleCount];
+        freeSlots = new int[maxParticleCount];
+        X = new ParticleArray(maxParticleCount, false);
+        Y = new ParticleArray(maxParticleCount, false);
+        oldX = new ParticleArray(maxParticleCount, false);
+        oldY = new ParticleArray(maxParticleCount, false);
+        vX = new ParticleArray(maxParticleCount, false);
+        vY = new ParticleArray(maxParticleCount, false);
+
+        grid = new CellGrid(maxParticleCount);
+        neighbors = new NeighborList(grid, maxParticleCount);
+
+        idOf = new int[maxParticleCount];
+        indexOf = new int[maxParticleCount];
+        for(int i = 0; i < maxParticleCount; i++) {
+            idOf[i] = i;
+            indexOf[i] = i;
+        }
+        reorderTmp = new double[maxParticleCount];
+        reorderIndex = new int[maxParticleCount];
+
+        restFrames = new int[maxParticleCount];
+        restX = new ParticleArray(maxParticleCount, false);
+        restY = new ParticleArray(maxParticleCount, false);
+        lastDensity = new ParticleArray(maxParticleCount, false);
+        awake = new int[maxParticleCount];
+
+        setThreads(1);
+
+        // initialize walls
+        obstacles.add(new Wall(0, 10, 20, 0));
+        obstacles.add(new Wall(10, 0, 0, -10));
+        obstacles.add(new Wall(790, 0, 0, 10));
+    }
+
+    public static FluidNew HighViscosity() {
+        FluidNew fluid = new FluidNew(4_000);
+
+        // initialize particles
+        int side = 40; //(int) Math.ceil(Math.sqrt(maxParticleCount));
+        int i = 0;
+        for(int x = 0; x < side; x++) {
+            if (i >= fluid.maxParticleCount) break;
+            for(int y = 0; y < Math.ceil(fluid.maxParticleCount / (double) side); y++) {
+                if (i >= fluid.maxParticleCount) break;
+                fluid.X.set(i, (x * (fluid.H * 0.7)) + 10 + fluid.H / 2 + fluid.random.nextDouble() * fluid.H * 0.2);
+                fluid.Y.set(i, (y * (fluid.H * 0.7)) + 10 + fluid.H / 2 + fluid.random.nextDouble() * fluid.H * 0.2);
+
+                i++;
+            }
+        }
+
+        return fluid;
+    }
+
+    public static FluidNew LowViscosity() {
+        FluidNew fluid = new FluidNew(4_000);
+
+        // initialize particles
+        int side = 40; //(int) Math.ceil(Math.sqrt(maxParticleCount));
+        int i = 0;
+        for(int x = 0; x < side; x++) {
+            if (i >= fluid.maxParticleCount) break;
+            for(int y = 0; y < Math.ceil(fluid.maxParticleCount / (double) side); y++) {
+                if (i >= fluid.maxParticleCount) break;
+                fluid.X.set(i, (x * (fluid.H * 0.7)) + 10 + fluid.H / 2 + fluid.random.nextDouble() * fluid.H * 0.2);
+                fluid.Y.set(i, (y * (fluid.H * 0.7)) + 10 + fluid.H / 2 + fluid.random.nextDouble() * fluid.H * 0.2);
+
+                i++;
+            }
+        }
+
+        // viscosity
+        fluid.SIGMA = 0;
+        fluid.BETA = 5;
+
+        return fluid;
+    }
+
+    public static FluidNew Viscoelastic() {
+        FluidNew fluid = new FluidNew(2_000);
+
+        // initialize a block above the ground
+        int side = 40;
+        int i = 0;
+        for(int x = 0; x < side; x++) {
+            for(int y = 0; y < fluid.maxParticleCount / side; y++) {
+                fluid.X.set(i, (x * (fluid.H * 0.7)) + 250 + fluid.random.nextDouble() * fluid.H * 0.2);
+                fluid.Y.set(i, (y * (fluid.H * 0.7)) + 200 + fluid.random.nextDouble() * fluid.H * 0.2);
+
+                i++;
+            }
+        }
+
+        fluid.SIGMA = 0;
+        fluid.BETA = 5;
+
+        // plasticity
+        fluid.ALPHA = 0.3;
+        fluid.GAMMA = 0.1;
+        fluid.setElasticity(true, 1_000);
+
+        return fluid;
+    }
+
+    public static FluidNew Stack(int n) {
+        FluidNew fluid = new FluidNew(n);
+
+        fluid.H = 40;
+        fluid.RADIUS = fluid.H / 3;
+        fluid.DRAW_RADIUS = fluid.RADIUS;
+        fluid.stabilization = false;
+
+        // initialize particles
+        int side = 1; //(int) Math.ceil(Math.sqrt(maxParticleCount));
+        int i = 0;
+
+        for(int y = 0; y < Math.ceil(fluid.maxParticleCount); y++) {
+            if (i >= fluid.maxParticleCount) break;
+            fluid.X.set(i, 60);
+            fluid.Y.set(i, (y * (fluid.H * 0.7)) + 10 + fluid.H / 2);
+
+            i++;
+        }
+
+        return fluid;
+    }
+
+    public static FluidNew TwoParticles() {
+        FluidNew fluid = new FluidNew(2);
+
+        fluid.stabilization = false;
+        fluid.H = 50;
+        fluid.RADIUS = fluid.H / 3;
+        fluid.DRAW_RADIUS = fluid.RADIUS;
+        fluid.GRAVITY = 0;
+        fluid.P0 = 0;
+        fluid.K_NEAR = 200_000;
+        fluid.VELOCITY_STRETCH = 1;
+
+        fluid.X.set(0, 100);
+        fluid.Y.set(0, 100);
+        fluid.X.set(1, 200);
+        fluid.Y.set(1, 101);
+
+        fluid.vX.set(0, 50);
+        fluid.vY.set(0, 0);
+        fluid.vX.set(1, -50);
+        fluid.vY.set(1, 0);
+
+        return fluid;
+    }
+
+    public static FluidNew Splash() {
+        int maxParticles = 2_200;
+        FluidNew fluid = new FluidNew(maxParticles);
+
+        fluid.SIGMA = 0;
+        fluid.BETA = 5;
+        fluid.stabilization = false;
+
+        int i = 0;
+
+        for(int x = 20; x < 800 - 20; x+=fluid.H * 0.6) {
+            for (int y = 20; y < 200; y+=fluid.H * 0.6) {
+                if (i < maxParticles) {
+                    fluid.X.set(i, x);
+                    fluid.Y.set(i, y);
+                    i++;
+                }
+            }
+        }
+
+        for(int x = 250; x < 450; x+=fluid.H * 0.7) {
+            for (int y = 350; y < 600; y+=fluid.H * 0.7) {
+                if (i < maxParticles) {
+                    fluid.X.set(i, x);
+                    fluid.Y.set(i, y);
+                    i++;
+                }
+            }
+        }
+
+        System.out.println(i);
+
+        return fluid;
+    }
+
+    public static FluidNew End() {
+        int maxParticles = 4_000;
+        FluidNew fluid = new FluidNew(maxParticles);
+
+        double r = 10;
+
+        // E
+        fluid.obstacles.add(new Capsule(129, 465, 151, 200, r));
+
+        fluid.obstacles.add(new Capsule(129, 465, 225, 482, r));
+        fluid.obstacles.add(new Capsule(140, 332.5, 249, 316, r));
+        fluid.obstacles.add(new Capsule(151, 200, 257, 183, r));
+
+        // N
+        fluid.obstacles.add(new Capsule(403, 488, 495, 252, r));
+        fluid.obstacles.add(new Capsule(495, 252, 270, 456, r));
+        fluid.obstacles.add(new Capsule(270, 456, 315, 225, r));
+
+        // D
+        fluid.obstacles.add(new Capsule(591, 490, 549, 250, r));
+        fluid.obstacles.add(new Capsule(591, 490, 683, 365, r));
+        fluid.obstacles.add(new Capsule(683, 365, 549, 250, r));
+
+        fluid.SIGMA = 0;
+        fluid.BETA = 5;
+        fluid.stabilization = true;
+        fluid.MU = 0.1;
+
+        int i = 0;
+
+        for(int x = 20; x < 800 - 20; x+=fluid.H * 0.6) {
+            for (int y = 20; y < 200; y+=fluid.H * 0.6) {
+                if (i < maxParticles) {
+                    fluid.X.set(i, x);
+                    fluid.Y.set(i, y);
+                    i++;
+                }
+            }
+        }
+
+        for(int x = 20; x < 800 - 20; x+=fluid.H * 0.6) {
+            for (int y = 600; y < 900; y+=fluid.H * 0.6) {
+                if (i < maxParticles) {
+                    fluid.X.set(i, x);
+                    fluid.Y.set(i, y);
+                    i++;
+                }
+            }
+        }
+
+        System.out.println(i);
+
+        return fluid;
+    }
+
+    public static FluidNew SourceSink() {
+
+        int maxParticles = 4_000;
+        FluidNew fluid = new FluidNew(maxParticles);
+
+        fluid.SIGMA = 0;
+        fluid.BETA = 5;
+        fluid.MU = 0.05;
+        //fluid.P0 = 20;
+
+        fluid.H = 13;
+        fluid.RADIUS = fluid.H / 3;
+        fluid.DRAW_RADIUS = fluid.RADIUS * 2;
+
+        int i = 0;
+
+        for (int y = 550; y < 900; y+=fluid.H * 0.6) {
+            for(int x = 20; x < 800 - 20; x+=fluid.H * 0.6) {
+                if (i < maxParticles) {
+                    fluid.X.set(i, x);
+                    fluid.Y.set(i, y);
+                    i++;
+                }
+            }
+        }
+
+        System.out.println(i);
+
+        fluid.obstacles.add(new Sphere(400, 0, 60));
+
+        double r = 10;
+        fluid.obstacles.add(new Capsule(583, 470, 544, 392, r));
+        fluid.obstacles.add(new Capsule(555, 335, 544, 392, r));
+        fluid.obstacles.add(new Capsule(555, 335, 700, 330, r));
+        fluid.obstacles.add(new Capsule(583, 470, 700, 330, r));
+
+        fluid.obstacles.add(new Capsule(232, 469, 300, 370, r));
+        fluid.obstacles.add(new Capsule(200, 327, 300, 370, r));
+        fluid.obstacles.add(new Capsule(200, 327, 120, 425, r));
+        fluid.obstacles.add(new Capsule(232, 469, 120, 425, r));
+
+        fluid.sinks.add(new SourceAndSink(new Capsule(10, 10, 30, 10, 10), 250, 550, 25, 2, -4));
+        fluid.sinks.add(new SourceAndSink(new Capsule(790, 10, 770, 10, 10), 550, 550, 25, -2, -4));
+
+        return fluid;
+    }
+
+    public static FluidNew Fountain() {
+        int maxParticles = 3_256;
+        FluidNew fluid = new FluidNew(maxParticles);
+
+        fluid.SIGMA = 0;
+        fluid.BETA = 5;
+        fluid.MU = 0.05;
+        fluid.P0 = 3;
+        fluid.stabilization = false;
+
+        fluid.H = 10;
+        fluid.RADIUS = fluid.H / 3;
+        fluid.DRAW_RADIUS = fluid.RADIUS * 2;
+
+        int i = 0;
+
+        double r = 10;
+        double fountainCenterY = 150;
+
+        for (int y = 20; y < fountainCenterY; y+=fluid.H * 0.6) {
+            for(int x = 20; x < 400 - r; x+=fluid.H * 0.5) {
+                if (i < maxParticles) {
+                    fluid.X.set(i, x);
+                    fluid.Y.set(i, y);
+                    i++;
+                }
+            }
+            for(int x = 780; x > 400 + r; x-=fluid.H * 0.5) {
+                if (i < maxParticles) {
+                    fluid.X.set(i, x);
+                    fluid.Y.set(i, y);
+                    i++;
+                }
+            }
+        }
+
+        System.out.println(i);
+
+        fluid.obstacles.add(new Capsule(400, fountainCenterY - 4 * r, 400, fountainCenterY - 2 * r, r));
+
+        fluid.sinks.add(new SourceAndSink(new Capsule(10, 10, 10, 20, 5), 400, fountainCenterY, r, 0, 5));
+        fluid.sinks.add(new SourceAndSink(new Capsule(790, 10, 790, 20, 5), 400, fountainCenterY, r, 0, 5));
+
+        return fluid;
+    }
+
+    /**
+     * starts empty, a faucet fills the box which drains through the floor on the right
+     */
+    public static FluidNew Faucet() {
+        FluidNew fluid = new FluidNew(4_000);
+        fluid.count = 0;
+
+        fluid.SIGMA = 0;
+        fluid.BETA = 5;
+
+        fluid.emitters.add(new Emitter(60, 500, 10, 200, 4, -1));
+        fluid.absorbers.add(new Sink(new Capsule(690, 0, 780, 0, 20)));
+
+        return fluid;
+    }
+
+    /**
+     * a water column in the left quarter of a box collapses, the box grows with the particle count
+     */
+    public static FluidNew DamBreak(int n) {
+        FluidNew fluid = new FluidNew(n);
+
+        fluid.SIGMA = 0;
+        fluid.BETA = 5;
+
+        // a column twice as high as wide
+        double spacing = fluid.H * 0.7;
+        int columns = (int) Math.ceil(Math.sqrt(n / 2.0));
+        fluid.setDomainWidth(4 * columns * spacing + 20);
+
+        for (int i = 0; i < n; i++) {
+            fluid.X.set(i, 10 + spacing / 2 + (i % columns) * spacing + fluid.random.nextDouble() * fluid.H * 0.2);
+            fluid.Y.set(i, 10 + spacing / 2 + (i / columns) * spacing + fluid.random.nextDouble() * fluid.H * 0.2);
+        }
+
+        return fluid;
+    }
+
+    /**
+     * a tank filled up to a tilted surface which sloshes back and forth, the tank grows with the particle count
+     */
+    public static FluidNew SloshingTank(int n) {
+        FluidNew fluid = new FluidNew(n);
+
+        fluid.SIGMA = 0;
+        fluid.BETA = 5;
+
+        // four times as wide as the mean fluid height, the surface rises from half to 1.5 times the mean height
+        double spacing = fluid.H * 0.7;
+        int columns = (int) Math.ceil(2 * Math.sqrt(n));
+        double meanRows = n / (double) columns;
+        fluid.setDomainWidth(columns * spacing + 20);
+
+        // fill the high side first, rounding leaves the low side a little short
+        int i = 0;
+        for (int x = columns - 1; x >= 0 && i < n; x--) {
+            int rows = (int) Math.ceil(meanRows * (0.5 + (x + 0.5) / columns));
+            for (int y = 0; y < rows && i < n; y++) {
+                fluid.X.set(i, 10 + spacing / 2 + x * spacing + fluid.random.nextDouble() * fluid.H * 0.2);
+                fluid.Y.set(i, 10 + spacing / 2 + y * spacing + fluid.random.nextDouble() * fluid.H * 0.2);
+                i++;
+            }
+        }
+
+        return fluid;
+    }
+
+    /**
+     * a block of fluid falls through a staggered field of spheres, the domain and the spheres grow with the particle
+     * count
+     */
+    public static FluidNew ObstacleField(int n) {
+        FluidNew fluid = new FluidNew(n);
+
+        fluid.SIGMA = 0;
+        fluid.BETA = 5;
+
+        // the block is four times as wide as high and starts at half the domain width
+        double spacing = fluid.H * 0.7;
+        int columns = (int) Math.ceil(2 * Math.sqrt(n));
+        double width = columns * spacing + 20;
+        fluid.setDomainWidth(width);
+
+        for (int row = 0; row < 4; row++) {
+            double y = width * (0.12 + 0.1 * row);
+            double offset = row % 2 == 0 ? 0.5 : 1;
+            for (int column = 0; column < 8; column++) {
+                fluid.obstacles.add(new Sphere(width * (column + offset) / 8, y, width / 40));
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            fluid.X.set(i, 10 + spacing / 2 + (i % columns) * spacing + fluid.random.nextDouble() * fluid.H * 0.2);
+            fluid.Y.set(i, width / 2 + (i / columns) * spacing + fluid.random.nextDouble() * fluid.H * 0.2);
+        }
+
+        return fluid;
+    }
+
+    /**
+     * replace the walls of the default 800 wide domain
+     */
+    private void setDomainWidth(double width) {
+        obstacles.clear();
+        obstacles.add(new Wall(0, 10, 20, 0));
+        obstacles.add(new Wall(10, 0, 0, -10));
+        obstacles.add(new Wall(width - 10, 0, 0, 10));
+    }
+
+    /**
+     * advance by one full step, clamping velocities if stabilization is on
+     */
+    public void simulate(double delta_t) {
+        stepScale = 1;
+        step(delta_t, stabilization);
+        acceleration = Double.NaN;
+    }
+
+    /**
+     * advance by interval with as few sub-steps as the CFL condition allows. Each sub-step is chosen from the maximum
+     * velocity and acceleration so no particle moves more than CFL * H, calm fluid takes steps of up to two full
+     * steps. Velocities are clamped like in {@link #simulate} if the scene has stabilization on.
+     *
+     * @return number of sub-steps taken
+     */
+    public int advance(double interval) {
+        int taken = 0;
+        double remaining = interval;
+        while (remaining > 1e-9 * interval) {
+            double duration = Math.min(remaining, stableScale() * STEP_DURATION);
+
+            // split the rest evenly instead of leaving a tiny last sub-step
+            if (duration < remaining && remaining < 2 * duration) {
+                duration = remaining / 2;
+            }
+
+            stepScale = duration / STEP_DURATION;
+            step(duration, stabilization);
+            remaining -= duration;
+            taken++;
+
+            // largest velocity change per full step squared
+            double maxDvSq = 0;
+            for (int i = 0; i < count; i++) {
+                double dvx = vX.get(i) - previousVX.get(i);
+                double dvy = vY.get(i) - previousVY.get(i);
+                maxDvSq = Math.max(maxDvSq, dvx * dvx + dvy * dvy);
+            }
+            previousVX.copyFrom(vX, count);
+            previousVY.copyFrom(vY, count);
+            acceleration = Math.sqrt(maxDvSq) / stepScale;
+        }
+
+        subSteps = taken;
+        return taken;
+    }
+
+    /**
+     * @return largest step scale keeping the displacement of every particle below CFL * H
+     */
+    private double stableScale() {
+        if (previousVX == null) {
+            previousVX = new ParticleArray(maxParticleCount, single);
+            previousVY = new ParticleArray(maxParticleCount, single);
+        }
+
+        double maxVSq = 0;
+        for (int i = 0; i < count; i++) {
+            double vx = vX.get(i);
+            double vy = vY.get(i);
+            maxVSq = Math.max(maxVSq, vx * vx + vy * vy);
+        }
+        double velocity = Math.sqrt(maxVSq);
+
+        // gravity is a lower bound of the acceleration, the previous sub-step gives the rest
+        double a = Math.abs(GRAVITY * DELTA_T);
+        if (acceleration == acceleration) {
+            a = Math.max(a, acceleration);
+        } else {
+            previousVX.copyFrom(vX, count);
+            previousVY.copyFrom(vY, count);
+        }
+
+        // largest s with v * s + a * s^2 / 2 <= CFL * H, without gravity resting fluid may have no acceleration at all
+        double distance = CFL * H;
+        double scale;
+        if (a > 0) {
+            scale = (Math.sqrt(velocity * velocity + 2 * a * distance) - velocity) / a;
+        } else {
+            scale = velocity > 0 ? distance / velocity : MAX_STEP_SCALE;
+        }
+        return Math.max(MIN_STEP_SCALE, Math.min(MAX_STEP_SCALE, scale));
+    }
+
+    /**
+     * @return number of sub-steps of the last {@link #advance}
+     */
+    public int getSubSteps() {
+        return subSteps;
+    }
+
+    private void step(double delta_t, boolean clampVelocity) {
+        applyPendingChanges();
+
+        // particles killed since the last step
+        compact();
+
+        frames++;
+
+        stepEvent.begin();
+        phaseEvent.begin();
+
+        long time = System.nanoTime();
+        long stepStart = time;
+
+        if (reorderInterval > 0 && frames % reorderInterval == 0) {
+            reorder();
+            time = phaseDone(Phase.REORDER, time);
+        }
+
+        // apply gravity forces
+        applyGravity();
+        time = phaseDone(Phase.GRAVITY, time);
+
+        // update neighbours
+        updateNeighbors();
+        time = phaseDone(Phase.GRID_UPDATE, time);
+
+        // viscosity impulses
+        applyViscosity();
+        time = phaseDone(Phase.VISCOSITY, time);
+
+        // freeze sleeping particles, wake those the viscosity impulses moved
+        wake();
+        time = phaseDone(Phase.SLEEP, time);
+
+        // limit max velocity
+        if(clampVelocity) {
+            limitVelocity();
+        }
+        time = phaseDone(Phase.VELOCITY_CLAMP, time);
+
+        // move particle according to velocity
+        integrate();
+        time = phaseDone(Phase.INTEGRATE, time);
+
+        // update neighbours
+        updateNeighbors();
+        time = phaseDone(Phase.GRID_UPDATE, time);
+
+        // adjust springs, create springs of new pairs and remove stretched ones
+        adjustSprings(delta_t);
+        time = phaseDone(Phase.SPRING_ADJUST, time);
+
+        // apply spring displacement
+        if (elastic) {
+            applySprings(delta_t);
+            time = phaseDone(Phase.SPRING_DISPLACEMENT, time);
+
+            // springs moved the particles, relaxation needs a valid neighbour list
+            updateNeighborList();
+            time = phaseDone(Phase.GRID_UPDATE, time);
+        }
+
+        // double density relaxation
+        relaxDensity();
+        time = phaseDone(Phase.DENSITY_RELAXATION, time);
+
+        // resolve collisions
+        resolveCollisions();
+        time = phaseDone(Phase.COLLISIONS, time);
+
+        // calculate new particle velocities based on old an new position
+        updateVelocities();
+        time = phaseDone(Phase.VELOCITY_UPDATE, time);
+
+        // count rest frames and put resting particles to sleep
+        updateSleep();
+        time = phaseDone(Phase.SLEEP, time);
+
+        // handle source and sinks, absorb and emit particles
+        handleSinks();
+        absorb();
+        emit(delta_t);
+        compact();
+        time = phaseDone(Phase.SINKS, time);
+
+        stepNanos[(int) (steps % LATENCY_WINDOW)] = time - stepStart;
+        steps++;
+        sampleStatistics();
+
+        if (stepEvent.isEnabled()) {
+            stepEvent.end();
+            if (stepEvent.shouldCommit()) {
+                stepEvent.frame = frames;
+                stepEvent.particles = count;
+                stepEvent.pairs = neighbors.pairCount;
+                stepEvent.springs = neighbors.springCount;
+                stepEvent.commit();
+            }
+        }
+    }
+
+    private long phaseDone(Phase phase, long start) {
+        long now = System.nanoTime();
+        phaseNanos[phase.ordinal()] += now - start;
+
+        if (phaseEvent.isEnabled()) {
+            phaseEvent.end();
+            if (phaseEvent.shouldCommit()) {
+                phaseEvent.phase = phase.name();
+                phaseEvent.particles = count;
+                phaseEvent.pairs = neighbors.pairCount;
+                phaseEvent.springs = neighbors.springCount;
+                phaseEvent.commit();
+            }
+
+            // the next phase starts right away
+            phaseEvent.begin();
+        }
+        return now;
+    }
+
+    void applyGravity() {
+        for (int i = 0; i < count; i++) {
+            vY.add(i, GRAVITY * DELTA_T * stepScale);
+        }
+    }
+
+    void applyViscosity() {
+        oldX.copyFrom(vX, count);
+        oldY.copyFrom(vY, count);
+
+        forEachPair(viscosityKernel);
+    }
+
+    /**
+     * run the kernel for every pair. In parallel mode a pair is handled by the cell of its first particle. A kernel
+     * may update both particles of its pair, since such a pair only touches particles in the 3x3 neighbourhood of
+     * that cell, which never overlaps with the neighbourhood of another cell of the same color.
+     */
+    private void forEachPair(PairKernel kernel) {
+        if (executionMode == ExecutionMode.PARALLEL) {
+            pairKernel = kernel;
+            for (int color = 0; color < NeighborList.COLORS; color++) {
+                pairColor = color;
+                executor.forRange(neighbors.colorStart[color + 1] - neighbors.colorStart[color], pairTask);
+            }
+            pairKernel = null;
+        } else {
+            for (int p = 0; p < neighbors.pairCount; p++) {
+                kernel.apply(p);
+            }
+        }
+    }
+
+    private void pairCells(int chunk, int from, int to) {
+        int offset = neighbors.colorStart[pairColor];
+        for (int cell = offset + from; cell < offset + to; cell++) {
+            for (int slot = neighbors.cellBegin[cell]; slot < neighbors.cellBegin[cell + 1]; slot++) {
+                int particle = neighbors.cellParticles[slot];
+                for (int p = neighbors.pairStart[particle], end = neighbors.pairStart[particle + 1]; p < end; p++) {
+                    pairKernel.apply(p);
+                }
+            }
+        }
+    }
+
+    private void viscosityImpulse(int p) {
+        int particle = neighbors.pairI[p];
+        int otherParticle = neighbors.pairJ[p];
+        if (restFrames[particle] >= SLEEP_FRAMES && restFrames[otherParticle] >= SLEEP_FRAMES) return;
+        double r = neighbors.r(p);
+
+        if (r <= 0) return;
+
+        double rx = neighbors.ux(p);
+        double ry = neighbors.uy(p);
+
+        double q = r / H;
+
+        if (q < 1) {
+            // inward radial velocity
+            double u = (oldX.get(particle) - oldX.get(otherParticle)) * rx +
+                    (oldY.get(particle) - oldY.get(otherParticle)) * ry;
+
+            if (u > 0) {
+                // linear and quadratic impulses
+                double factor = DELTA_T * stepScale * (1 - q) * (SIGMA * u + BETA * u * u);
+                double Ix = rx * factor;
+                double Iy = ry * factor;
+
+                double vParticleLength = length(vX.get(particle), vY.get(particle));
+                double vOtherLength = length(vX.get(otherParticle), vY.get(otherParticle));
+                double weight = (vParticleLength) / (vParticleLength + vOtherLength);
+
+                if (!stabilization) weight = 0.5;
+
+                vX.add(particle, -Ix * weight);
+                vY.add(particle, -Iy * weight);
+                vX.add(otherParticle, Ix * (1 - weight));
+                vY.add(otherParticle, Iy * (1 - weight));
+            }
+        }
+    }
+
+    void limitVelocity() {
+        MAX_VELOCITY = H / 3;
+        double maxSq = MAX_VELOCITY * MAX_VELOCITY;
+        for (int i = 0; i < count; i++) {
+            double vx = vX.get(i);
+            double vy = vY.get(i);
+            if (vx * vx + vy * vy > maxSq) {
+                double magnitude = length(vx, vy);
+                vX.set(i, (vx / magnitude) * MAX_VELOCITY);
+                vY.set(i, (vy / magnitude) * MAX_VELOCITY);
+            }
+        }
+    }
+
+    void integrate() {
+        // save old particle positions
+        oldX.copyFrom(X, count);
+        oldY.copyFrom(Y, count);
+
+        for (int i = 0; i < count; i++) {
+            X.add(i, vX.get(i) * stepScale);
+        }
+        for (int i = 0; i < count; i++) {
+            Y.add(i, vY.get(i) * stepScale);
+        }
+    }
+
+    void adjustSprings(double delta_t) {
+        for (int p = 0; p < neighbors.pairCount; p++) {
+            double r = neighbors.r(p);
+
+            double q = r / H;
+            if (q < 1) {
+                double L = neighbors.rest(p);
+                if (L != L) {
+                    L = H;
+                    neighbors.springCount++;
+                }
+
+                // tolerable deformation = yield ratio * rest length
+                double d = GAMMA * L;
+                if (r > L + d) {        // stretch
+                    L = L + delta_t * ALPHA * (r - L - d);
+                } else if (r < L - d) { // compress
+                    L = L - delta_t * ALPHA * (L - d - r);
+                }
+                neighbors.setRest(p, L);
+            } else if (r > H && neighbors.rest(p) == neighbors.rest(p)) {
+                neighbors.setRest(p, Double.NaN);
+                neighbors.springCount--;
+            }
+        }
+    }
+
+    void applySprings(double delta_t) {
+        springFactor = delta_t * delta_t * K_SPRING;
+        forEachPair(springKernel);
+    }
+
+    private void springDisplacement(int p) {
+        double L = neighbors.rest(p);
+        if (L != L) return;
+
+        int particle = neighbors.pairI[p];
+        int otherParticle = neighbors.pairJ[p];
+
+        // earlier springs already moved the particles, distances can not be taken from the list
+        double r = getDistance(particle, otherParticle);
+
+        if (r > 0) {
+            double rx = (X.get(otherParticle) - X.get(particle)) / r;
+            double ry = (Y.get(otherParticle) - Y.get(particle)) / r;
+
+            double dx = springFactor * (1 - L / H) * (L - r) * rx;
+            double dy = springFactor * (1 - L / H) * (L - r) * ry;
+
+            X.add(particle, -dx / 2);
+            Y.add(particle, -dy / 2);
+
+            X.add(otherParticle, dx / 2);
+            Y.add(otherParticle, dy / 2);
+        }
+    }
+
+    void relaxDensity() {
+        if (executionMode == ExecutionMode.PARALLEL) {
+            // no neighbour pair connects two cells of the same color, so their particles can be relaxed concurrently
+            for (int color = 0; color < NeighborList.COLORS; color++) {
+                relaxationColor = color;
+                executor.forRange(neighbors.colorStart[color + 1] - neighbors.colorStart[color], relaxationTask);
+            }
+        } else {
+            RelaxationScratch tmp = relaxationScratch[0];
+            for(int a = 0; a < awakeCount; a++) {
+                int particle_index = awake[a];
+                relax(particle_index, tmp);
+
+                // apply displacement
+                X.add(particle_index, tmp.dx);
+                Y.add(particle_index, tmp.dy);
+            }
+        }
+    }
+
+    /**
+     * build the obstacle broadphase. Candidates are found by the position a particle had before its first collision,
+     * the margin leaves room for the collisions moving it.
+     */
+    private void buildObstacleIndex() {
+        double slack = H;
+        if (obstacleFieldCellSize > 0) {
+            List<Obstacle> bounded = new ArrayList<>();
+            List<Obstacle> unbounded = new ArrayList<>();
+            for (var obstacle : obstacles) {
+                (obstacle.getBounds().isBounded() ? bounded : unbounded).add(obstacle);
+            }
+            obstacleIndex = new ObstacleIndex<>(unbounded, RADIUS + slack, 2 * H);
+            obstacleField = SignedDistanceField.of(bounded, 2 * RADIUS, obstacleFieldCellSize, obstacleFieldMaxError);
+        } else {
+            obstacleIndex = new ObstacleIndex<>(obstacles, RADIUS + slack, 2 * H);
+            obstacleField = null;
+        }
+
+        // particles resting against the old obstacles may not rest against the new ones
+        wakeAll();
+        sinkIndex = new ObstacleIndex<>(sinks, slack, 2 * H);
+        absorberIndex = new ObstacleIndex<>(absorbers, slack, 2 * H);
+    }
+
+    void resolveCollisions() {
+        if (obstacleIndex == null) buildObstacleIndex();
+
+        if (single) {
+            obstacleIndex.collide(X.singleValues(), Y.singleValues(), oldX.singleValues(), oldY.singleValues(), awake,
+                    awakeCount, RADIUS, MU);
+        } else {
+            obstacleIndex.collide(X.values(), Y.values(), oldX.values(), oldY.values(), awake, awakeCount, RADIUS, MU);
+        }
+
+        if (obstacleField != null) {
+            for (int a = 0; a < awakeCount; a++) {
+                int particle = awake[a];
+                double dist = obstacleField.distance(X.get(particle), Y.get(particle), RADIUS);
+                if (single) {
+                    respondSingle(particle, obstacleField.nx, obstacleField.ny, dist);
+                } else {
+                    Obstacle.respond(particle, obstacleField.nx, obstacleField.ny, dist, X.values(), Y.values(),
+                            oldX.values(), oldY.values(), RADIUS, MU);
+                }
+            }
+        }
+    }
+
+    /**
+     * {@link Obstacle#respond} for a particle in float storage, through double copies of its positions
+     */
+    private void respondSingle(int particle, double nx, double ny, double dist) {
+        if (dist >= RADIUS) return;
+
+        contactX[0] = X.get(particle);
+        contactY[0] = Y.get(particle);
+        contactOldX[0] = oldX.get(particle);
+        contactOldY[0] = oldY.get(particle);
+        Obstacle.respond(0, nx, ny, dist, contactX, contactY, contactOldX, contactOldY, RADIUS, MU);
+        X.set(particle, contactX[0]);
+        Y.set(particle, contactY[0]);
+    }
+
+    /**
+     * wake sleeping particles moving faster than WAKE_SPEED * H and stop the others, then collect the awake particles
+     */
+    void wake() {
+        double wakeSq = WAKE_SPEED * H * WAKE_SPEED * H;
+        awakeCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (restFrames[i] >= SLEEP_FRAMES) {
+                if (lengthSq(vX.get(i), vY.get(i)) > wakeSq) {
+                    disturb(i);
+                } else {
+                    vX.set(i, 0);
+                    vY.set(i, 0);
+                    continue;
+                }
+            }
+            awake[awakeCount++] = i;
+        }
+    }
+
+    /**
+     * count the steps every particle has been at rest. A particle disturbed in this step wakes its sleeping
+     * neighbours.
+     */
+    void updateSleep() {
+        if (!sleeping || elastic) return;
+
+        double sleepSq = SLEEP_SPEED * H * SLEEP_SPEED * H;
+        double driftSq = SLEEP_DRIFT * H * SLEEP_DRIFT * H;
+        sleepingCount = 0;
+        for (int i = 0; i < count; i++) {
+            double dx = X.get(i) - restX.get(i);
+            double dy = Y.get(i) - restY.get(i);
+            if (restFrames[i] >= SLEEP_FRAMES) {
+                sleepingCount++;
+            } else if (restFrames[i] < 0 || lengthSq(vX.get(i), vY.get(i)) > sleepSq || dx * dx + dy * dy > driftSq) {
+                disturb(i);
+            } else if (++restFrames[i] == SLEEP_FRAMES) {
+                sleepingCount++;
+            }
+        }
+        if (sleepingCount == 0) return;
+
+        // woken particles start at 1, so they do not wake their own neighbours in this pass
+        for (int p = 0; p < neighbors.pairCount; p++) {
+            if (neighbors.r(p) >= H) continue;
+
+            int i = neighbors.pairI[p];
+            int j = neighbors.pairJ[p];
+            if (restFrames[i] >= SLEEP_FRAMES && restFrames[j] == 0) {
+                restFrames[i] = 1;
+                sleepingCount--;
+            } else if (restFrames[j] >= SLEEP_FRAMES && restFrames[i] == 0) {
+                restFrames[j] = 1;
+                sleepingCount--;
+            }
+        }
+    }
+
+    /**
+     * restart counting the rest frames of a particle from its current position
+     */
+    private void disturb(int particle) {
+        restFrames[particle] = 0;
+        restX.set(particle, X.get(particle));
+        restY.set(particle, Y.get(particle));
+    }
+
+    private void wakeAll() {
+        for (int i = 0; i < count; i++) {
+            disturb(i);
+        }
+        sleepingCount = 0;
+    }
+
+    /**
+     * put particles that stay at rest to sleep, they are skipped by viscosity, density relaxation and collisions.
+     * Springs keep every particle awake.
+     */
+    public void setSleeping(boolean sleeping) {
+        this.sleeping = sleeping;
+        wakeAll();
+    }
+
+    public boolean isSleeping() {
+        return sleeping;
+    }
+
+    /**
+     * @return fraction of the particles not asleep
+     */
+    public double getActiveFraction() {
+        return count == 0 ? 1 : 1 - (double) sleepingCount / count;
+    }
+
+    void updateVelocities() {
+        for (int i = 0; i < count; i++) {
+            vX.set(i, (X.get(i) - oldX.get(i)) / stepScale);
+        }
+        for (int i = 0; i < count; i++) {
+            vY.set(i, (Y.get(i) - oldY.get(i)) / stepScale);
+        }
+    }
+
+    void handleSinks() {
+        if (sinkIndex == null) buildObstacleIndex();
+        if (sinkIndex.size() == 0) return;
+
+        for(int particle = 0; particle < count; particle++) {
+            handledParticle = particle;
+            int cell = sinkIndex.cell(X.get(particle), Y.get(particle));
+            for (int slot = sinkIndex.cellStart(cell); slot < sinkIndex.cellEnd(cell); slot++) {
+                handledSink = sinkIndex.candidate(slot);
+                handledSink.handleCollision(X.get(particle), Y.get(particle), sinkHandler);
+            }
+        }
+        handledSink = null;
+    }
+
+    /**
+     * move the handled particle to the source of the handled sink if it is inside the sink
+     */
+    private void recycle(double nx, double ny, double dist) {
+        if (dist < 0) {
+            int particle = handledParticle;
+            SourceAndSink sink = handledSink;
+            X.set(particle, sink.sourceX + (random.nextDouble() - 0.5) * 2 * sink.sourceRadius);
+            Y.set(particle, sink.sourceY + (random.nextDouble() - 0.5) * 2 * sink.sourceRadius);
+
+            vX.set(particle, sink.vX);
+            vY.set(particle, sink.vY);
+            resetAcceleration(particle);
+            disturb(particle);
+        }
+    }
+
+    /**
+     * a particle placed by a source or emitter has no acceleration for the step size
+     */
+    private void resetAcceleration(int particle) {
+        if (previousVX != null) {
+            previousVX.set(particle, vX.get(particle));
+            previousVY.set(particle, vY.get(particle));
+        }
+    }
+
+    void absorb() {
+        if (absorberIndex == null) buildObstacleIndex();
+        if (absorberIndex.size() == 0) return;
+
+        for(int particle = 0; particle < count; particle++) {
+            handledParticle = particle;
+            int cell = absorberIndex.cell(X.get(particle), Y.get(particle));
+            for (int slot = absorberIndex.cellStart(cell); slot < absorberIndex.cellEnd(cell); slot++) {
+                absorberIndex.candidate(slot).handleCollision(X.get(particle), Y.get(particle), absorberHandler);
+            }
+        }
+    }
+
+    /**
+     * kill the handled particle if it is inside the absorber
+     */
+    private void absorbHandled(double nx, double ny, double dist) {
+        if (dist < 0 && !dead[handledParticle]) {
+            kill(handledParticle);
+        }
+    }
+
+    void emit(double delta_t) {
+        for (int e = 0; e < emitters.size(); e++) {
+            Emitter emitter = emitters.get(e);
+            emitter.pending += emitter.rate * delta_t;
+            while (emitter.pending >= 1) {
+                emitter.pending--;
+                spawn(emitter.x + (random.nextDouble() - 0.5) * 2 * emitter.radius,
+                        emitter.y + (random.nextDouble() - 0.5) * 2 * emitter.radius,
+                        emitter.vX, emitter.vY);
+            }
+        }
+    }
+
+    /**
+     * add a particle, reusing the slot of a particle killed in this step if there is one
+     *
+     * @return the index of the new particle or -1 if all slots are in use
+     */
+    public int spawn(double x, double y, double vx, double vy) {
+        int particle;
+        if (freeCount > 0) {
+            particle = freeSlots[--freeCount];
+        } else if (count < maxParticleCount) {
+            particle = count++;
+        } else {
+            return -1;
+        }
+
+        dead[particle] = false;
+        X.set(particle, x);
+        Y.set(particle, y);
+        oldX.set(particle, x);
+        oldY.set(particle, y);
+        vX.set(particle, vx);
+        vY.set(particle, vy);
+        resetAcceleration(particle);
+        disturb(particle);
+        lastDensity.set(particle, 0);
+        return particle;
+    }
+
+    /**
+     * remove a particle together with its springs. Its slot is reused by the next spawn, or filled with the last
+     * particle before the next step. The ids of killed particles are handed out again.
+     */
+    public void kill(int particle) {
+        if (particle >= count || dead[particle]) {
+            throw new IllegalArgumentException("particle " + particle + " is not alive");
+        }
+
+        neighbors.removeSprings(particle);
+        dead[particle] = true;
+        freeSlots[freeCount++] = particle;
+    }
+
+    /**
+     * move the last particles into the slots of the killed ones, so the live particles are 0 .. count - 1 again
+     */
+    private void compact() {
+        if (freeCount == 0) return;
+
+        // reorderIndex: old index -> new index, -1 for killed particles
+        for (int i = 0; i < count; i++) {
+            reorderIndex[i] = i;
+        }
+
+        Arrays.sort(freeSlots, 0, freeCount);
+        int end = count;
+        for (int k = 0; k < freeCount; k++) {
+            int hole = freeSlots[k];
+
+            // drop killed particles from the end
+            while (end > hole && dead[end - 1]) {
+                end--;
+                reorderIndex[end] = -1;
+                dead[end] = false;
+            }
+            if (end <= hole) break;
+
+            int from = --end;
+            X.move(from, hole);
+            Y.move(from, hole);
+            oldX.move(from, hole);
+            oldY.move(from, hole);
+            vX.move(from, hole);
+            vY.move(from, hole);
+            if (previousVX != null) {
+                previousVX.move(from, hole);
+                previousVY.move(from, hole);
+            }
+            restFrames[hole] = restFrames[from];
+            restX.move(from, hole);
+            restY.move(from, hole);
+            lastDensity.move(from, hole);
+
+            int id = idOf[from];
+            idOf[from] = idOf[hole];
+            indexOf[idOf[from]] = from;
+            idOf[hole] = id;
+            indexOf[id] = hole;
+
+            reorderIndex[from] = hole;
+            reorderIndex[hole] = -1;
+            dead[hole] = false;
+        }
+
+        count = end;
+        freeCount = 0;
+
+        neighbors.permute(reorderIndex);
+        grid.invalidate();
+    }
+
+    /**
+     * compute the double density relaxation displacement of a single particle into tmp.dx / tmp.dy
+     */
+    private void relax(int particle_index, RelaxationScratch tmp) {
+        tmp.reset();
+
+        // gather vectors to neighbouring particles
+        for (int a = neighbors.adjStart[particle_index], end = neighbors.adjStart[particle_index + 1]; a < end; a++) {
+            int p = neighbors.adjPair[a];
+            int otherParticle = neighbors.pairI[p] == particle_index ? neighbors.pairJ[p] : neighbors.pairI[p];
+
+            // positions change during sequential relaxation, distances can not be taken from the list
+            double r = getDistance(particle_index, otherParticle);
+            double q = r / H;
+
+            if (q < 1 && r > 0) {
+                tmp.add((X.get(otherParticle) - X.get(particle_index)) / r,
+                        (Y.get(otherParticle) - Y.get(particle_index)) / r, 1 - q);
+            }
+        }
+
+        double density = 0;
+        double density_near = 0;
+
+        // compute density and near-density
+        for(int i = 0; i < tmp.size; i++) {
+            double invQ = tmp.invQ[i];
+
+            density += invQ * invQ;
+            density_near += density * invQ;
+        }
+
+        if (sleeping) {
+            if (Math.abs(density - lastDensity.get(particle_index)) > SLEEP_DENSITY_CHANGE * density) {
+                restFrames[particle_index] = -1;
+            }
+            lastDensity.set(particle_index, density);
+        }
+
+        // compute pressure and near-pressure
+        double pressure = K * (density - P0);
+        double pressure_near = K_NEAR * density_near;
+
+        double dx = 0;
+        double dy = 0;
+
+        double dt = DELTA_T * stepScale;
+        for(int i = 0; i < tmp.size; i++) {
+            double factor = dt * dt * tmp.invQ[i] * (pressure + pressure_near * tmp.invQ[i]) * 0.5;
+            dx -= tmp.x[i] * factor;
+            dy -= tmp.y[i] * factor;
+        }
+
+        tmp.dx = dx;
+        tmp.dy = dy;
+    }
+
+    private void relaxCells(int chunk, int from, int to) {
+        RelaxationScratch tmp = relaxationScratch[chunk];
+        int offset = neighbors.colorStart[relaxationColor];
+        for (int cell = offset + from; cell < offset + to; cell++) {
+            for (int slot = neighbors.cellBegin[cell]; slot < neighbors.cellBegin[cell + 1]; slot++) {
+                int particle = neighbors.cellParticles[slot];
+                if (restFrames[particle] >= SLEEP_FRAMES) continue;
+
+                relax(particle, tmp);
+                X.add(particle, tmp.dx);
+                Y.add(particle, tmp.dy);
+            }
+        }
+    }
+
+    /**
+     * SEQUENTIAL reproduces the single threaded results bit by bit, PARALLEL splits the work over the executor's
+     * threads which changes the order particles are updated in
+     */
+    public void setExecutionMode(ExecutionMode mode) {
+        executionMode = mode;
+    }
+
+    /**
+     * FLOAT stores the particle state (positions, velocities and the sleep bookkeeping) and the neighbour pairs'
+     * distances, directions and spring rest lengths as floats, which halves those arrays and the bytes every pass
+     * streams. All arithmetic stays double, values are rounded when they are stored. The index arrays of the particles,
+     * pairs and grid stay ints, so the simulation as a whole saves about a third of its memory. It is a memory
+     * option, not a speed one: the conversions cost more than the smaller loads save, steps take 10 to 30 percent
+     * longer. DOUBLE is the default, switching converts the stored values.
+     */
+    public void setStorage(Storage storage) {
+        single = storage == Storage.FLOAT;
+        for (ParticleArray values : particleArrays()) {
+            if (values != null) values.setFloatStorage(single);
+        }
+        neighbors.setFloatStorage(single);
+    }
+
+    public Storage getStorage() {
+        return single ? Storage.FLOAT : Storage.DOUBLE;
+    }
+
+    /**
+     * @return the particle arrays in checkpoint order, previousVX and previousVY are null before the first advance
+     */
+    private ParticleArray[] particleArrays() {
+        return new ParticleArray[] { X, Y, oldX, oldY, vX, vY, previousVX, previousVY, restX, restY, lastDensity };
+    }
+
+    /**
+     * @return bytes used by the particle arrays and the neighbour list
+     */
+    public long getMemoryBytes() {
+        long bytes = 0;
+        for (ParticleArray values : particleArrays()) {
+            if (values != null) bytes += values.getMemoryBytes();
+        }
+        long ints = 6L * maxParticleCount;
+        return bytes + (long) reorderTmp.length * Double.BYTES + ints * Integer.BYTES + maxParticleCount
+                + neighbors.getMemoryBytes();
+    }
+
+    /**
+     * @return nanoseconds spent in the phase over all steps since the last reset
+     */
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public void resetPhaseNanos() {
+        Arrays.fill(phaseNanos, 0);
+    }
+
+    /**
+     * enable the elastic spring displacement with the given spring constant
+     */
+    public void setElasticity(boolean enabled, double springConstant) {
+        elastic = enabled;
+        K_SPRING = springConstant;
+    }
+
+    public void setThreads(int threads) {
+        if (executor != null) executor.shutdown();
+        executor = new ParallelExecutor(threads);
+        relaxationScratch = new RelaxationScratch[executor.getChunks()];
+        for (int c = 0; c < relaxationScratch.length; c++) {
+            relaxationScratch[c] = new RelaxationScratch();
+        }
+    }
+
+    public void applyExternalForce(double x, double y, double force, double radius) {
+        for(int i = 0; i < count; i++) {
+            double r = length(X.get(i) - x, Y.get(i) - y);
+            double rx = (X.get(i) - x) / r;
+            double ry = (Y.get(i) - y) / r;
+
+            if (r < radius && r > 0) {
+                vX.add(i, rx * force * (1 - r / radius));
+                vY.add(i, ry * force * (1 - r / radius));
+                disturb(i);
+            }
+        }
+    }
+
+    public void applyExternalForce(double x1, double y1, double x2, double y2, double force) {
+        double rsq = (x1 - x2) * (x1 - x2) + (y1 - y2) * (y1 - y2);
+        double r = Math.sqrt(rsq);
+        double cx = x1 + (x2 - x1) * 0.5;
+        double cy = y1 + (y2 - y1) * 0.5;
+        double nx = (x2 - x1) / r;
+        double ny = (y2 - y1) / r;
+
+        for(int i = 0; i < count; i++) {
+            double distSq = lengthSq(X.get(i) - cx, Y.get(i) - cy);
+
+            if (distSq < rsq) {
+                vX.add(i, nx * force);
+                vY.add(i, ny * force);
+                disturb(i);
+            }
+        }
+    }
+
+    void updateGrid() {
+        if (single) {
+            grid.update(X.singleValues(), Y.singleValues(), count, H * (1 + SKIN));
+        } else {
+            grid.update(X.values(), Y.values(), count, H * (1 + SKIN));
+        }
+    }
+
+    void updateNeighbors() {
+        updateNeighborList();
+        if (single) {
+            neighbors.refresh(X.singleValues(), Y.singleValues());
+        } else {
+            neighbors.refresh(X.values(), Y.values());
+        }
+    }
+
+    private void updateNeighborList() {
+        if (single) {
+            neighbors.update(X.singleValues(), Y.singleValues(), count, H, H * SKIN);
+        } else {
+            neighbors.update(X.values(), Y.values(), count, H, H * SKIN);
+        }
+    }
+
+    /**
+     * permute all particle data so that particles are stored in the grid's morton order
+     */
+    private void reorder() {
+        updateGrid();
+
+        // reorderIndex: old index -> new index
+        for (int slot = 0; slot < count; slot++) {
+            reorderIndex[grid.particleAt(slot)] = slot;
+        }
+
+        permute(X);
+        permute(Y);
+        permute(oldX);
+        permute(oldY);
+        permute(vX);
+        permute(vY);
+        if (previousVX != null) {
+            permute(previousVX);
+            permute(previousVY);
+        }
+        if (sleeping) {
+            permute(restFrames);
+            permute(restX);
+            permute(restY);
+            permute(lastDensity);
+        }
+
+        for (int i = 0; i < count; i++) {
+            int id = idOf[grid.particleAt(i)];
+            indexOf[id] = i;
+        }
+        for (int id = 0; id < maxParticleCount; id++) {
+            idOf[indexOf[id]] = id;
+        }
+
+        neighbors.permute(reorderIndex);
+        grid.invalidate();
+    }
+
+    private void permute(ParticleArray values) {
+        values.permute(reorderIndex, count, reorderTmp);
+    }
+
+    private void permute(int[] values) {
+        // ints are exact in the double scratch
+        for (int i = 0; i < count; i++) {
+            reorderTmp[i] = values[i];
+        }
+        for (int i = 0; i < count; i++) {
+            values[reorderIndex[i]] = (int) reorderTmp[i];
+        }
+    }
+
+    /**
+     * run a change from another thread on the simulation thread before the next step
+     */
+    void atStepBoundary(Runnable change) {
+        pendingChanges.add(change);
+    }
+
+    long getSteps() {
+        return steps;
+    }
+
+    private void applyPendingChanges() {
+        Runnable change;
+        while ((change = pendingChanges.poll()) != null) {
+            change.run();
+            wakeAll();
+        }
+    }
+
+    /**
+     * copy the live particles into a snapshot, on the thread that steps the simulation
+     */
+    void copyTo(Snapshot snapshot) {
+        X.copyTo(snapshot.X, count);
+        Y.copyTo(snapshot.Y, count);
+        vX.copyTo(snapshot.vX, count);
+        vY.copyTo(snapshot.vY, count);
+        System.arraycopy(idOf, 0, snapshot.ids, 0, count);
+        snapshot.count = count;
+
+        // springs only for the renderer, the list may still refer to slots freed since its last rebuild
+        snapshot.springCount = 0;
+        if (drawSprings) {
+            for (int p = 0; p < neighbors.pairCount; p++) {
+                int i = neighbors.pairI[p];
+                int j = neighbors.pairJ[p];
+                if (neighbors.rest(p) != neighbors.rest(p) || i >= count || j >= count) continue;
+
+                if (2 * snapshot.springCount + 2 > snapshot.springs.length) {
+                    snapshot.springs = Arrays.copyOf(snapshot.springs, Math.max(64, snapshot.springs.length * 2));
+                }
+                snapshot.springs[2 * snapshot.springCount] = i;
+                snapshot.springs[2 * snapshot.springCount + 1] = j;
+                snapshot.springCount++;
+            }
+        }
+    }
+
+    /**
+     * publish the particle, grid and neighbour statistics of the finished step for the monitor, which reads them from
+     * another thread
+     */
+    private void sampleStatistics() {
+        int occupied = 0;
+        for (int cell = 0; cell < grid.cellCount(); cell++) {
+            if (grid.cellEnd(cell) > grid.cellStart(cell)) occupied++;
+        }
+
+        averageNeighbors = count == 0 ? Double.NaN : 2.0 * neighbors.getPairCount() / count;
+        gridCells = grid.cellCount();
+        occupiedGridCells = occupied;
+        gridOccupancy = occupied == 0 ? Double.NaN : (double) grid.size() / occupied;
+        springCount = neighbors.getSpringCount();
+        springCapacity = neighbors.getSpringCapacity();
+        sampledCount = count;
+        activeFraction = getActiveFraction();
+    }
+
+    /**
+     * @return the durations of up to the last LATENCY_WINDOW steps in nanoseconds, in no particular order
+     */
+    long[] recentStepNanos() {
+        return Arrays.copyOf(stepNanos, (int) Math.min(steps, LATENCY_WINDOW));
+    }
+
+    /**
+     * copy the particle state and spring rest lengths, isolated phases can be undone with restoreState as long as the
+     * neighbour list was not rebuilt in between
+     */
+    State saveState() {
+        return new State(new double[][] { X.toDoubles(), Y.toDoubles(), oldX.toDoubles(), oldY.toDoubles(),
+                vX.toDoubles(), vY.toDoubles(), neighbors.copyRests() }, count, neighbors.springCount);
+    }
+
+    void restoreState(State state) {
+        ParticleArray[] arrays = { X, Y, oldX, oldY, vX, vY };
+        for (int a = 0; a < arrays.length; a++) {
+            arrays[a].copyFrom(state.arrays[a]);
+        }
+        neighbors.restoreRests(state.arrays[arrays.length]);
+        count = state.count;
+        neighbors.springCount = state.springCount;
+        wakeAll();
+        wake();
+    }
+
+    /**
+     * copy the complete state between two steps, on the thread that steps the simulation, which is only read. Killed
+     * particles not compacted yet, the neighbour list and the grid binning are stored as they are, so a simulation
+     * restored from the checkpoint continues bit identical to this one. Changes queued by other threads and not
+     * applied yet are not part of the checkpoint.
+     */
+    public Checkpoint checkpoint() {
+        Checkpoint.Encoder out = Checkpoint.encoder(64 * count + 1024);
+        out.putInt(maxParticleCount);
+        out.putInt(count);
+        double[] constants = constants();
+        out.putDoubles(constants, constants.length);
+
+        out.putLong(frames);
+        out.putLong(steps);
+        out.putLong(random.getState());
+        out.putDouble(stepScale);
+        out.putDouble(acceleration);
+        out.putInt(subSteps);
+        out.putInt(sleepingCount);
+        out.putInt(getStorage().ordinal());
+        out.putInt(executionMode.ordinal());
+        out.putInt(executor.getThreads());
+
+        // obstacles, building their index wakes every particle, so a restore has to build it before the sleep state
+        out.putInt(obstacleIndex != null ? 1 : 0);
+        out.putInt(obstacles.size());
+        for (Obstacle obstacle : obstacles) out.putObstacle(obstacle);
+        out.putInt(sinks.size());
+        for (SourceAndSink sink : sinks) out.putObstacle(sink);
+        out.putInt(absorbers.size());
+        for (Sink absorber : absorbers) out.putObstacle(absorber);
+        out.putInt(emitters.size());
+        for (Emitter emitter : emitters) out.putEmitter(emitter);
+
+        // particles
+        for (ParticleArray values : particleArrays()) {
+            if (values != null) {
+                values.encode(out, count);
+            } else {
+                out.putDoubles(null, 0);
+            }
+        }
+        out.putInts(restFrames, count);
+        out.putInts(idOf, maxParticleCount);
+        out.putInts(indexOf, maxParticleCount);
+        out.putInts(freeSlots, freeCount);
+
+        neighbors.encode(out);
+        grid.encode(out);
+
+        return out.finish();
+    }
+
+    /**
+     * @return a new simulation continuing from the checkpoint
+     */
+    public static FluidNew restore(Checkpoint checkpoint) {
+        Checkpoint.Decoder in = checkpoint.decoder();
+        FluidNew fluid = new FluidNew(in.getInt());
+        fluid.count = in.getInt();
+
+        // constants missing in an older checkpoint keep their defaults
+        double[] constants = fluid.constants();
+        double[] stored = in.getDoubles();
+        System.arraycopy(stored, 0, constants, 0, Math.min(stored.length, constants.length));
+        fluid.setConstants(constants);
+
+        fluid.frames = (int) in.getLong();
+        fluid.steps = in.getLong();
+        fluid.random.setState(in.getLong());
+        fluid.stepScale = in.getDouble();
+        fluid.acceleration = in.getDouble();
+        fluid.subSteps = in.getInt();
+        int sleepingCount = in.getInt();
+        fluid.setStorage(Storage.values()[in.getInt()]);
+        fluid.setExecutionMode(ExecutionMode.values()[in.getInt()]);
+        fluid.setThreads(in.getInt());
+
+        boolean indexed = in.getInt() != 0;
+        fluid.obstacles.clear();
+        for (int k = in.getInt(); k > 0; k--) fluid.obstacles.add(in.getObstacle());
+        for (int k = in.getInt(); k > 0; k--) fluid.sinks.add((SourceAndSink) in.getObstacle());
+        for (int k = in.getInt(); k > 0; k--) fluid.absorbers.add((Sink) in.getObstacle());
+        for (int k = in.getInt(); k > 0; k--) fluid.emitters.add(in.getEmitter());
+        if (indexed) fluid.buildObstacleIndex();
+        fluid.sleepingCount = sleepingCount;
+
+        for (ParticleArray values : new ParticleArray[] { fluid.X, fluid.Y, fluid.oldX, fluid.oldY, fluid.vX,
+                fluid.vY }) {
+            values.decode(in);
+        }
+        if (in.peekLength() >= 0) {
+            fluid.previousVX = new ParticleArray(fluid.maxParticleCount, fluid.single);
+            fluid.previousVY = new ParticleArray(fluid.maxParticleCount, fluid.single);
+            fluid.previousVX.decode(in);
+            fluid.previousVY.decode(in);
+        } else {
+            // both missing
+            in.getInt();
+            in.getInt();
+        }
+        for (ParticleArray values : new ParticleArray[] { fluid.restX, fluid.restY, fluid.lastDensity }) {
+            values.decode(in);
+        }
+        in.getInts(fluid.restFrames);
+        in.getInts(fluid.idOf);
+        in.getInts(fluid.indexOf);
+        fluid.freeCount = in.getInts(fluid.freeSlots);
+        for (int k = 0; k < fluid.freeCount; k++) {
+            fluid.dead[fluid.freeSlots[k]] = true;
+        }
+
+        fluid.neighbors.decode(in);
+        fluid.grid.decode(in);
+
+        return fluid;
+    }
+
+    /**
+     * @return the constants in checkpoint order, booleans as 0 / 1. New ones are appended at the end.
+     */
+    private double[] constants() {
+        return new double[] { H, K, K_NEAR, K_SPRING, elastic ? 1 : 0, P0, SIGMA, BETA, ALPHA, GAMMA, MU, RADIUS,
+                DRAW_RADIUS, GRAVITY, DELTA_T, STEP_DURATION, CFL, MIN_STEP_SCALE, MAX_STEP_SCALE, MAX_VELOCITY,
+                stabilization ? 1 : 0, VELOCITY_STRETCH, SKIN, sleeping ? 1 : 0, SLEEP_DRIFT, SLEEP_SPEED, WAKE_SPEED,
+                SLEEP_DENSITY_CHANGE, SLEEP_FRAMES, reorderInterval, obstacleFieldCellSize, obstacleFieldMaxError };
+    }
+
+    private void setConstants(double[] c) {
+        H = c[0];
+        K = c[1];
+        K_NEAR = c[2];
+        K_SPRING = c[3];
+        elastic = c[4] != 0;
+        P0 = c[5];
+        SIGMA = c[6];
+        BETA = c[7];
+        ALPHA = c[8];
+        GAMMA = c[9];
+        MU = c[10];
+        RADIUS = c[11];
+        DRAW_RADIUS = c[12];
+        GRAVITY = c[13];
+        DELTA_T = c[14];
+        STEP_DURATION = c[15];
+        CFL = c[16];
+        MIN_STEP_SCALE = c[17];
+        MAX_STEP_SCALE = c[18];
+        MAX_VELOCITY = c[19];
+        stabilization = c[20] != 0;
+        VELOCITY_STRETCH = c[21];
+        SKIN = c[22];
+        sleeping = c[23] != 0;
+        SLEEP_DRIFT = c[24];
+        SLEEP_SPEED = c[25];
+        WAKE_SPEED = c[26];
+        SLEEP_DENSITY_CHANGE = c[27];
+        SLEEP_FRAMES = (int) c[28];
+        reorderInterval = (int) c[29];
+        obstacleFieldCellSize = c[30];
+        obstacleFieldMaxError = c[31];
+    }
+
+    /**
+     * collide with a distance field baked from all bounded obstacles instead of the obstacles themselves, walls stay
+     * analytic. The field is refined until it is within maxError of the analytic distances. A cell size of 0 switches
+     * back to the analytic obstacles.
+     */
+    public void setObstacleField(double cellSize, double maxError) {
+        obstacleFieldCellSize = cellSize;
+        obstacleFieldMaxError = maxError;
+        obstacleIndex = null;
+        sinkIndex = null;
+        absorberIndex = null;
+    }
+
+    /**
+     * @return the largest distance error of the baked obstacle field, NaN if the obstacles are not baked (yet)
+     */
+    public double getObstacleFieldError() {
+        return obstacleField == null ? Double.NaN : obstacleField.getError();
+    }
+
+    /**
+     * @return why the baked obstacle field could not be read from or written to its disk cache, null if it could, the
+     * obstacles are not baked (yet) or can not be cached
+     */
+    public IOException getObstacleFieldCacheError() {
+        return obstacleField == null ? null : obstacleField.getCacheError();
+    }
+
+    public void setReorderInterval(int frames) {
+        reorderInterval = frames;
+    }
+
+    public int getParticleCount() {
+        return count;
+    }
+
+    public int getCapacity() {
+        return maxParticleCount;
+    }
+
+    /**
+     * @return the interaction radius H
+     */
+    public double getInteractionRadius() {
+        return H;
+    }
+
+    /**
+     * @return radius particles are drawn with
+     */
+    public double getDrawRadius() {
+        return DRAW_RADIUS;
+    }
+
+    /**
+     * @return factor velocities are scaled with when drawn as lines
+     */
+    public double getVelocityStretch() {
+        return VELOCITY_STRETCH;
+    }
+
+    /**
+     * stop the worker threads, the simulation can not step in PARALLEL mode afterwards
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public int getParticleId(int index) {
+        return idOf[index];
+    }
+
+    public int getParticleIndex(int id) {
+        return indexOf[id];
+    }
+
+    public double getX(int index) {
+        return X.get(index);
+    }
+
+    public double getY(int index) {
+        return Y.get(index);
+    }
+
+    public double getVX(int index) {
+        return vX.get(index);
+    }
+
+    public double getVY(int index) {
+        return vY.get(index);
+    }
+
+    public void draw(DrawSurface context) {
+        if (single) {
+            // widened into a snapshot, the drawing takes doubles
+            Snapshot snapshot = new Snapshot(count);
+            copyTo(snapshot);
+            draw(context, snapshot);
+            return;
+        }
+        draw(context, X.values(), Y.values(), vX.values(), vY.values(), count);
+    }
+
+    /**
+     * draw the obstacles and the particles of a snapshot, safe to call while another thread steps the simulation
+     */
+    public void draw(DrawSurface context, Snapshot snapshot) {
+        draw(context, snapshot.X, snapshot.Y, snapshot.vX, snapshot.vY, snapshot.count);
+    }
+
+    /**
+     * draw everything but the particles, to be combined with a {@link rendering.ParticleRaster}
+     */
+    public void drawObstacles(DrawSurface context) {
+        context.setStroke(DrawSurface.GREY);
+        context.setFill(DrawSurface.GREY);
+        for(var obstacle : obstacles) obstacle.draw(context);
+        for(var sink : sinks) sink.draw(context);
+        for(var absorber : absorbers) absorber.draw(context);
+        for(var emitter : emitters) emitter.draw(context);
+    }
+
+    private void draw(DrawSurface context, double[] X, double[] Y, double[] vX, double[] vY, int count) {
+        drawObstacles(context);
+
+        // particles
+        for (int i = 0; i < count; i++) {
+            if (drawParticle) {
+                double v = Math.sqrt(vX[i] * vX[i] + vY[i] * vY[i]);
+                context.setFill(DrawSurface.interpolate(DrawSurface.MEDIUMBLUE, DrawSurface.MEDIUMORCHID, v), 0.7);
+
+                double r = DRAW_RADIUS;
+                context.fillOval(X[i] - r, Y[i] - r, r * 2, r * 2);
+            }
+
+//            // interaction range
+//            if (drawInteractionRadius) {
+//                context.setStroke(DrawSurface.BLUE);
+//                context.strokeOval(X[i] - H, Y[i] - H, H * 2, H * 2);
+//            }
+
+//            if (drawSprings) {
+//                context.setStroke(DrawSurface.LIGHTGREEN);
+//                for (int p = neighbors.pairStart[i]; p < neighbors.pairStart[i + 1]; p++) {
+//                    if (neighbors.rest(p) != neighbors.rest(p)) continue;
+//                    context.strokeLine(X[i], Y[i], X[neighbors.pairJ[p]], Y[neighbors.pairJ[p]]);
+//                }
+//            }
+        }
+
+        if (drawVelocity) {
+            context.setFill(DrawSurface.RED);
+            for(int i = 0; i < count; i++) {
+                double r = 2;
+                context.fillOval(X[i] - r, Y[i] - r, r * 2, r * 2);
+            }
+
+            context.setStroke(DrawSurface.ORANGE);
+            context.setLineWidth(2);
+            for(int i = 0; i < count; i++) {
+                context.strokeLine(X[i], Y[i], X[i] + vX[i] * VELOCITY_STRETCH, Y[i] + vY[i] * VELOCITY_STRETCH);
+            }
+            context.setLineWidth(1);
+        }
+    }
+
+    private double getDistance(int i, int j) {
+        return length(X.get(i) - X.get(j), Y.get(i) - Y.get(j));
+    }
+
+    private static double length(double x, double y) {
+        return Math.sqrt(lengthSq(x, y));
+    }
+
+    private static double lengthSq(double x, double y) {
+        return x * x + y * y;
+    }
+
+    /**
+     * outline the grid cell under (x, y) and connect the particle closest to (x, y) in that cell with its neighbours.
+     * The grid belongs to the stepping thread, so the snapshot is scanned instead.
+     */
+    public void drawMouseOver(DrawSurface context, Snapshot snapshot, double x, double y) {
+        double[] X = snapshot.X;
+        double[] Y = snapshot.Y;
+        double cellSize = H * (1 + SKIN);
+        int cellX = (int) Math.floor(x / cellSize);
+        int cellY = (int) Math.floor(y / cellSize);
+
+        int cellParticles = 0;
+        int particle = 0;
+        double min = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < snapshot.count; i++) {
+            if ((int) Math.floor(X[i] / cellSize) != cellX || (int) Math.floor(Y[i] / cellSize) != cellY) continue;
+
+            cellParticles++;
+            double d = (X[i] - x) * (X[i] - x) + (Y[i] - y) * (Y[i] - y);
+            if (d < min) {
+                min = d;
+                particle = i;
+            }
+        }
+
+        context.strokeRect(cellX * cellSize, cellY * cellSize, cellSize, cellSize);
+
+        context.setStroke(DrawSurface.RED);
+        int neighborCount = 0;
+        if (cellParticles > 0) {
+            for (int otherParticle = 0; otherParticle < snapshot.count; otherParticle++) {
+                if (particle == otherParticle) continue;
+
+                double r = Math.sqrt((X[otherParticle] - X[particle]) * (X[otherParticle] - X[particle])
+                        + (Y[otherParticle] - Y[particle]) * (Y[otherParticle] - Y[particle]));
+                if (r < H) {
+                    context.strokeLine(X[particle], Y[particle], X[otherParticle], Y[otherParticle]);
+                    neighborCount++;
+                }
+            }
+
+            context.strokeOval(X[particle] - H, Y[particle] - H, 2 * H, 2 * H);
+        }
+
+        // display cell count
+        context.save();
+        context.scale(1, -1);
+        context.setFill(DrawSurface.BLACK);
+        context.fillText(cellParticles + (cellParticles > 0 ? " (" + neighborCount + ", #" + snapshot.ids[particle] + ")" : ""), (cellX + 0.5) * cellSize, -(cellY + 0.5) * cellSize - 20);
+        context.fillText(x + "/" + y ,(cellX + 0.5) * cellSize, -(cellY + 0.5) * cellSize - 10);
+        context.restore();
+    }
+
+    public enum ExecutionMode {
+        SEQUENTIAL, PARALLEL
+    }
+
+    public enum Storage {
+        DOUBLE, FLOAT
+    }
+
+    @FunctionalInterface
+    private interface PairKernel {
+        void apply(int pair);
+    }
+
+    static class State {
+        private final double[][] arrays;
+        private final int count;
+        private final int springCount;
+
+        private State(double[][] arrays, int count, int springCount) {
+            this.arrays = arrays;
+            this.count = count;
+            this.springCount = springCount;
+        }
+    }
+
+    private static class RelaxationScratch {
+        double[] x = new double[64];
+        double[] y = new double[64];
+        double[] invQ = new double[64];
+        int size;
+
+        double dx;
+        double dy;
+
+        void reset() {
+            size = 0;
+        }
+
+        void add(double nx, double ny, double inv) {
+            if (size == x.length) {
+                x = Arrays.copyOf(x, size * 2);
+                y = Arrays.copyOf(y, size * 2);
+                invQ = Arrays.copyOf(invQ, size * 2);
+            }
+            x[size] = nx;
+            y[size] = ny;
+            invQ[size] = inv;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,805 @@
+package simulation;
+
+import java.util.Arrays;
+
+/**
+ * verlet style list of particle pairs closer than cutoff + skin.
+ *
+ * Pairs (i, j) with i < j are stored grouped by i, pair p of particle i is one of pairStart[i] .. pairStart[i + 1] - 1.
+ * For every pair the distance and the unit vector from i to j are cached by {@link #refresh(double[], double[])}.
+ * The adjacency (all pairs of a particle, regardless of its role) is available through adjStart / adjPair.
+ * The binning used for the last rebuild is kept with its cells grouped by a 3x3 coloring: colored cell k holds the
+ * particles cellParticles[cellBegin[k]] .. cellParticles[cellBegin[k + 1] - 1] and the cells of color c are
+ * colorStart[c] .. colorStart[c + 1] - 1. No pair connects two different cells of the same color.
+ * The list stays valid until any particle moved more than half the skin since the last rebuild.
+ *
+ * Each pair slot also carries the rest length of the spring between its particles (NaN if there is none). Pairs
+ * are sorted by j within their row, so a rebuild carries the springs over by merging the old and new rows; springs
+ * of pairs that left the list vanish with them. The store is bounded by the pair capacity.
+ *
+ * With float storage the distances, unit vectors and rest lengths are stored as floats, halving the largest arrays
+ * of the simulation. They are still computed in double, read them through {@link #r(int)}, {@link #ux(int)},
+ * {@link #uy(int)} and {@link #rest(int)}. The positions then have to be in float storage as well, the list keeps
+ * the positions of its last rebuild in the same precision.
+ */
+public class NeighborList {
+    private final CellGrid grid;
+
+    private int size = -1;
+    private double cutoff = Double.NaN;
+    private double skin;
+
+    // positions at the last rebuild, singleRefX / singleRefY in float storage
+    private double[] refX;
+    private double[] refY;
+    private float[] singleRefX;
+    private float[] singleRefY;
+
+    int pairCount;
+    int[] pairStart;
+    int[] pairI = new int[1024];
+    int[] pairJ = new int[1024];
+    double[] pairR = new double[1024];
+    double[] pairUx = new double[1024];
+    double[] pairUy = new double[1024];
+    double[] pairRest = new double[1024];
+    int springCount;
+
+    // the pair cache and rest lengths in single precision, used instead of the double arrays which are null then
+    private boolean single = false;
+    private float[] singleR;
+    private float[] singleUx;
+    private float[] singleUy;
+    private float[] singleRest;
+
+    // rows of the previous list, to carry spring rest lengths over
+    private int previousSize = -1;
+    private int[] previousStart;
+    private int[] previousJ = new int[1024];
+    private double[] previousRest = new double[1024];
+    private float[] singlePreviousRest;
+    private boolean permuted = false;
+
+    // the kept springs by their higher particle, the slots of particle j are keptByJ[keptByJStart[j]] ..
+    // keptByJ[keptByJStart[j + 1] - 1]. Built on the first removal after a permutation.
+    private int[] keptByJStart;
+    private int[] keptByJ = new int[1024];
+    private boolean keptIndexed = false;
+
+    int[] adjStart;
+    int[] adjPair = new int[2048];
+
+    // non empty cells of the rebuild binning grouped by a 3x3 coloring, cells of the same color share no pairs
+    static final int COLORS = 9;
+    final int[] colorStart = new int[COLORS + 1];
+    int[] cellBegin = new int[257];
+    int[] cellParticles;
+
+    private final int[] colorParticles = new int[COLORS + 1];
+    private final int[] colorNext = new int[COLORS];
+
+    private int rebuilds = 0;
+
+    public NeighborList(CellGrid grid, int capacity) {
+        this.grid = grid;
+        refX = new double[capacity];
+        refY = new double[capacity];
+        pairStart = new int[capacity + 1];
+        previousStart = new int[capacity + 1];
+        adjStart = new int[capacity + 1];
+        cellParticles = new int[capacity];
+    }
+
+    /**
+     * rebuild the list if it is no longer valid for the current positions
+     *
+     * @return true if the list was rebuilt
+     */
+    public boolean update(double[] X, double[] Y, int count, double cutoff, double skin) {
+        checkStorage(false);
+        if (size == count && this.cutoff == cutoff && this.skin == skin && !moved(X, Y, skin * 0.5)) {
+            return false;
+        }
+
+        startRebuild(count, cutoff, skin);
+        grid.update(X, Y, size, cutoff + skin);
+        System.arraycopy(X, 0, refX, 0, size);
+        System.arraycopy(Y, 0, refY, 0, size);
+        finishRebuild();
+        return true;
+    }
+
+    /**
+     * {@link #update(double[], double[], int, double, double)} for positions in float storage
+     */
+    public boolean update(float[] X, float[] Y, int count, double cutoff, double skin) {
+        checkStorage(true);
+        if (size == count && this.cutoff == cutoff && this.skin == skin && !moved(X, Y, skin * 0.5)) {
+            return false;
+        }
+
+        startRebuild(count, cutoff, skin);
+        grid.update(X, Y, size, cutoff + skin);
+        System.arraycopy(X, 0, singleRefX, 0, size);
+        System.arraycopy(Y, 0, singleRefY, 0, size);
+        finishRebuild();
+        return true;
+    }
+
+    private void checkStorage(boolean single) {
+        if (this.single != single) {
+            throw new IllegalStateException("positions in " + (single ? "float" : "double") + " storage passed to a "
+                    + (this.single ? "float" : "double") + " neighbour list");
+        }
+    }
+
+    /**
+     * recompute the cached distances and unit vectors for all pairs
+     */
+    public void refresh(double[] X, double[] Y) {
+        checkStorage(false);
+        for (int p = 0; p < pairCount; p++) {
+            int i = pairI[p];
+            int j = pairJ[p];
+            double dx = X[j] - X[i];
+            double dy = Y[j] - Y[i];
+            double r = Math.sqrt(dx * dx + dy * dy);
+
+            pairR[p] = r;
+            if (r > 0) {
+                pairUx[p] = dx / r;
+                pairUy[p] = dy / r;
+            } else {
+                pairUx[p] = 0;
+                pairUy[p] = 0;
+            }
+        }
+    }
+
+    /**
+     * {@link #refresh(double[], double[])} for positions in float storage
+     */
+    public void refresh(float[] X, float[] Y) {
+        checkStorage(true);
+        for (int p = 0; p < pairCount; p++) {
+            int i = pairI[p];
+            int j = pairJ[p];
+            double dx = X[j] - X[i];
+            double dy = Y[j] - Y[i];
+            double r = Math.sqrt(dx * dx + dy * dy);
+
+            singleR[p] = (float) r;
+            if (r > 0) {
+                singleUx[p] = (float) (dx / r);
+                singleUy[p] = (float) (dy / r);
+            } else {
+                singleUx[p] = 0;
+                singleUy[p] = 0;
+            }
+        }
+    }
+
+    /**
+     * distance between the particles of pair p at the last refresh
+     */
+    double r(int p) {
+        return single ? singleR[p] : pairR[p];
+    }
+
+    /**
+     * unit vector from particle pairI[p] to pairJ[p] at the last refresh
+     */
+    double ux(int p) {
+        return single ? singleUx[p] : pairUx[p];
+    }
+
+    double uy(int p) {
+        return single ? singleUy[p] : pairUy[p];
+    }
+
+    /**
+     * rest length of the spring of pair p, NaN if there is none
+     */
+    double rest(int p) {
+        return single ? singleRest[p] : pairRest[p];
+    }
+
+    void setRest(int p, double rest) {
+        if (single) {
+            singleRest[p] = (float) rest;
+        } else {
+            pairRest[p] = rest;
+        }
+    }
+
+    private double previousRest(int o) {
+        return single ? singlePreviousRest[o] : previousRest[o];
+    }
+
+    private void setPreviousRest(int o, double rest) {
+        if (single) {
+            singlePreviousRest[o] = (float) rest;
+        } else {
+            previousRest[o] = rest;
+        }
+    }
+
+    /**
+     * switch between double and float storage of the pair cache, rest lengths and rebuild positions, the current
+     * values are converted. Later updates and refreshes need positions in the same storage.
+     */
+    public void setFloatStorage(boolean single) {
+        if (this.single == single) return;
+
+        this.single = single;
+        if (single) {
+            singleR = toFloat(pairR);
+            singleUx = toFloat(pairUx);
+            singleUy = toFloat(pairUy);
+            singleRest = toFloat(pairRest);
+            singlePreviousRest = toFloat(previousRest);
+            singleRefX = toFloat(refX);
+            singleRefY = toFloat(refY);
+            pairR = pairUx = pairUy = pairRest = previousRest = refX = refY = null;
+        } else {
+            pairR = toDouble(singleR);
+            pairUx = toDouble(singleUx);
+            pairUy = toDouble(singleUy);
+            pairRest = toDouble(singleRest);
+            previousRest = toDouble(singlePreviousRest);
+            refX = toDouble(singleRefX);
+            refY = toDouble(singleRefY);
+            singleR = singleUx = singleUy = singleRest = singlePreviousRest = singleRefX = singleRefY = null;
+        }
+    }
+
+    public boolean isFloatStorage() {
+        return single;
+    }
+
+    private static float[] toFloat(double[] values) {
+        float[] result = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (float) values[i];
+        }
+        return result;
+    }
+
+    private static double[] toDouble(float[] values) {
+        double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i];
+        }
+        return result;
+    }
+
+    /**
+     * @return a copy of the rest lengths of all pair slots
+     */
+    double[] copyRests() {
+        return single ? toDouble(singleRest) : pairRest.clone();
+    }
+
+    /**
+     * overwrite the rest lengths with a copy taken by {@link #copyRests()}
+     */
+    void restoreRests(double[] rests) {
+        int length = Math.min(rests.length, pairJ.length);
+        for (int p = 0; p < length; p++) {
+            setRest(p, rests[p]);
+        }
+    }
+
+    /**
+     * drop the list together with all springs
+     */
+    public void invalidate() {
+        size = -1;
+        permuted = false;
+    }
+
+    /**
+     * renumber the particles, newIndex maps old to new particle indices, -1 drops a particle. The pairs are rebuilt on
+     * the next update, the springs are kept.
+     */
+    public void permute(int[] newIndex) {
+        if (permuted) {
+            // not rebuilt since the last permutation, its springs become the pairs to permute
+            unpackPrevious();
+        } else if (size < 0) {
+            return;
+        }
+        int size = permuted ? previousSize : this.size;
+
+        // counting sort of the springs by their new lower index
+        Arrays.fill(previousStart, 0, size + 1, 0);
+        for (int p = 0; p < pairCount; p++) {
+            if (rest(p) != rest(p) || newIndex[pairI[p]] < 0 || newIndex[pairJ[p]] < 0) continue;
+            previousStart[Math.min(newIndex[pairI[p]], newIndex[pairJ[p]]) + 1]++;
+        }
+        for (int i = 0; i < size; i++) {
+            previousStart[i + 1] += previousStart[i];
+        }
+        if (previousJ.length < previousStart[size]) {
+            previousJ = new int[pairJ.length];
+            if (single) {
+                singlePreviousRest = new float[pairJ.length];
+            } else {
+                previousRest = new double[pairJ.length];
+            }
+        }
+        for (int p = 0; p < pairCount; p++) {
+            if (rest(p) != rest(p) || newIndex[pairI[p]] < 0 || newIndex[pairJ[p]] < 0) continue;
+            int a = newIndex[pairI[p]];
+            int b = newIndex[pairJ[p]];
+            int slot = previousStart[Math.min(a, b)]++;
+            previousJ[slot] = Math.max(a, b);
+            setPreviousRest(slot, rest(p));
+        }
+        for (int i = size; i > 0; i--) {
+            previousStart[i] = previousStart[i - 1];
+        }
+        previousStart[0] = 0;
+        for (int i = 0; i < size; i++) {
+            sortRow(previousJ, true, previousStart[i], previousStart[i + 1]);
+        }
+
+        previousSize = size;
+        permuted = true;
+        keptIndexed = false;
+        this.size = -1;
+        pairCount = 0;
+    }
+
+    /**
+     * append the list as it is, with its springs and binning, for a checkpoint. The cached distances and directions
+     * are left out, they are refreshed before every use.
+     */
+    void encode(Checkpoint.Encoder out) {
+        out.putInt(size);
+        out.putDouble(cutoff);
+        out.putDouble(skin);
+        out.putInt(springCount);
+
+        out.putInts(pairI, pairCount);
+        out.putInts(pairJ, pairCount);
+        double[] rests = new double[pairCount];
+        for (int p = 0; p < pairCount; p++) {
+            rests[p] = rest(p);
+        }
+        out.putDoubles(rests, pairCount);
+        if (size >= 0) {
+            if (single) {
+                out.putFloats(singleRefX, size);
+                out.putFloats(singleRefY, size);
+            } else {
+                out.putDoubles(refX, size);
+                out.putDoubles(refY, size);
+            }
+            out.putInts(pairStart, size + 1);
+            out.putInts(colorStart, COLORS + 1);
+            out.putInts(cellBegin, colorStart[COLORS] + 1);
+            out.putInts(cellParticles, size);
+        }
+
+        // springs kept by a permutation the list was not rebuilt after
+        out.putInt(permuted ? previousSize : -1);
+        if (permuted) {
+            int springs = previousStart[previousSize];
+            out.putInts(previousStart, previousSize + 1);
+            out.putInts(previousJ, springs);
+            double[] previousRests = new double[springs];
+            for (int o = 0; o < springs; o++) {
+                previousRests[o] = previousRest(o);
+            }
+            out.putDoubles(previousRests, springs);
+        }
+    }
+
+    /**
+     * read a list appended by {@link #encode}, the storage precision has to be set before
+     */
+    void decode(Checkpoint.Decoder in) {
+        size = in.getInt();
+        cutoff = in.getDouble();
+        skin = in.getDouble();
+        springCount = in.getInt();
+
+        pairCount = in.peekLength();
+        ensurePairs(pairCount);
+        in.getInts(pairI);
+        in.getInts(pairJ);
+        double[] rests = in.getDoubles();
+        for (int p = 0; p < pairCount; p++) {
+            setRest(p, rests[p]);
+        }
+        if (size >= 0) {
+            if (single) {
+                in.getFloats(singleRefX);
+                in.getFloats(singleRefY);
+            } else {
+                in.getDoubles(refX);
+                in.getDoubles(refY);
+            }
+            in.getInts(pairStart);
+            in.getInts(colorStart);
+            if (cellBegin.length < in.peekLength()) {
+                cellBegin = new int[in.peekLength()];
+            }
+            in.getInts(cellBegin);
+            in.getInts(cellParticles);
+            buildAdjacency();
+        }
+
+        previousSize = in.getInt();
+        permuted = previousSize >= 0;
+        keptIndexed = false;
+        if (permuted) {
+            in.getInts(previousStart);
+            int springs = in.peekLength();
+            if (previousJ.length < springs) {
+                previousJ = new int[Math.max(springs, pairJ.length)];
+                if (single) {
+                    singlePreviousRest = new float[previousJ.length];
+                } else {
+                    previousRest = new double[previousJ.length];
+                }
+            }
+            in.getInts(previousJ);
+            double[] previousRests = in.getDoubles();
+            for (int o = 0; o < springs; o++) {
+                setPreviousRest(o, previousRests[o]);
+            }
+        }
+    }
+
+    /**
+     * grow the pair arrays to hold at least capacity pairs, at least doubling them
+     */
+    private void ensurePairs(int capacity) {
+        if (pairI.length < capacity) {
+            int grown = Math.max(capacity, pairI.length * 2);
+            pairI = Arrays.copyOf(pairI, grown);
+            if (single) {
+                singleR = Arrays.copyOf(singleR, grown);
+                singleUx = Arrays.copyOf(singleUx, grown);
+                singleUy = Arrays.copyOf(singleUy, grown);
+            } else {
+                pairR = Arrays.copyOf(pairR, grown);
+                pairUx = Arrays.copyOf(pairUx, grown);
+                pairUy = Arrays.copyOf(pairUy, grown);
+            }
+        }
+        if (pairJ.length < capacity) {
+            pairJ = Arrays.copyOf(pairJ, pairI.length);
+            if (single) {
+                singleRest = Arrays.copyOf(singleRest, pairI.length);
+            } else {
+                pairRest = Arrays.copyOf(pairRest, pairI.length);
+            }
+        }
+    }
+
+    /**
+     * turn the springs kept by the last permutation back into pairs
+     */
+    private void unpackPrevious() {
+        pairCount = 0;
+        for (int i = 0; i < previousSize; i++) {
+            for (int o = previousStart[i]; o < previousStart[i + 1]; o++) {
+                addPair(i, previousJ[o]);
+                setRest(pairCount - 1, previousRest(o));
+            }
+        }
+    }
+
+    /**
+     * drop all springs of a particle
+     */
+    public void removeSprings(int particle) {
+        if (permuted) {
+            if (particle >= previousSize) return;
+            if (!keptIndexed) indexKept();
+
+            for (int o = previousStart[particle]; o < previousStart[particle + 1]; o++) {
+                removeKept(o);
+            }
+            for (int k = keptByJStart[particle]; k < keptByJStart[particle + 1]; k++) {
+                removeKept(keptByJ[k]);
+            }
+        } else if (particle < size) {
+            for (int a = adjStart[particle]; a < adjStart[particle + 1]; a++) {
+                int p = adjPair[a];
+                if (rest(p) == rest(p)) {
+                    setRest(p, Double.NaN);
+                    springCount--;
+                }
+            }
+        }
+    }
+
+    private void removeKept(int o) {
+        if (previousRest(o) == previousRest(o)) {
+            setPreviousRest(o, Double.NaN);
+            springCount--;
+        }
+    }
+
+    /**
+     * counting sort of the kept springs by their higher particle, so removals do not scan all rows
+     */
+    private void indexKept() {
+        int springs = previousStart[previousSize];
+        if (keptByJStart == null) {
+            keptByJStart = new int[previousStart.length];
+        }
+        if (keptByJ.length < springs) {
+            keptByJ = new int[previousJ.length];
+        }
+
+        Arrays.fill(keptByJStart, 0, previousSize + 1, 0);
+        for (int o = 0; o < springs; o++) {
+            keptByJStart[previousJ[o] + 1]++;
+        }
+        for (int j = 0; j < previousSize; j++) {
+            keptByJStart[j + 1] += keptByJStart[j];
+        }
+        for (int o = 0; o < springs; o++) {
+            keptByJ[keptByJStart[previousJ[o]]++] = o;
+        }
+        for (int j = previousSize; j > 0; j--) {
+            keptByJStart[j] = keptByJStart[j - 1];
+        }
+        keptByJStart[0] = 0;
+        keptIndexed = true;
+    }
+
+    public int getPairCount() {
+        return pairCount;
+    }
+
+    public int getSpringCount() {
+        return springCount;
+    }
+
+    /**
+     * @return number of pair slots with a rest length
+     */
+    public int getSpringCapacity() {
+        return pairJ.length;
+    }
+
+    /**
+     * @return bytes used by the pair, spring and binning arrays
+     */
+    public long getMemoryBytes() {
+        long ints = pairI.length + pairJ.length + previousJ.length + adjPair.length + keptByJ.length
+                + pairStart.length + previousStart.length + adjStart.length + cellParticles.length + cellBegin.length
+                + (keptByJStart == null ? 0 : keptByJStart.length);
+        long values = 3L * pairI.length + pairJ.length + previousJ.length
+                + 2L * (single ? singleRefX.length : refX.length);
+        return ints * Integer.BYTES + values * (single ? Float.BYTES : Double.BYTES);
+    }
+
+    public int getRebuilds() {
+        return rebuilds;
+    }
+
+    private boolean moved(double[] X, double[] Y, double limit) {
+        double limitSq = limit * limit;
+        for (int i = 0; i < size; i++) {
+            double dx = X[i] - refX[i];
+            double dy = Y[i] - refY[i];
+            if (dx * dx + dy * dy > limitSq) return true;
+        }
+        return false;
+    }
+
+    private boolean moved(float[] X, float[] Y, double limit) {
+        double limitSq = limit * limit;
+        for (int i = 0; i < size; i++) {
+            double dx = X[i] - singleRefX[i];
+            double dy = Y[i] - singleRefY[i];
+            if (dx * dx + dy * dy > limitSq) return true;
+        }
+        return false;
+    }
+
+    private double refX(int i) {
+        return single ? singleRefX[i] : refX[i];
+    }
+
+    private double refY(int i) {
+        return single ? singleRefY[i] : refY[i];
+    }
+
+    /**
+     * keep the current rows for their springs, the caller bins the particles and copies their positions
+     */
+    private void startRebuild(int count, double cutoff, double skin) {
+        this.cutoff = cutoff;
+        this.skin = skin;
+        rebuilds++;
+
+        // keep the current rows, their springs are merged into the new ones
+        if (!permuted) {
+            previousSize = size;
+            int[] start = previousStart;
+            previousStart = pairStart;
+            pairStart = start;
+            int[] j = previousJ;
+            previousJ = pairJ;
+            pairJ = j;
+            double[] rest = previousRest;
+            previousRest = pairRest;
+            pairRest = rest;
+            float[] singleRest = singlePreviousRest;
+            singlePreviousRest = this.singleRest;
+            this.singleRest = singleRest;
+        }
+        permuted = false;
+        size = count;
+    }
+
+    /**
+     * collect the pairs of the binned particles at their rebuild positions
+     */
+    private void finishRebuild() {
+        double range = cutoff + skin;
+        double rangeSq = range * range;
+
+        pairCount = 0;
+        for (int i = 0; i < size; i++) {
+            pairStart[i] = pairCount;
+
+            int cellX = grid.cellX(i);
+            int cellY = grid.cellY(i);
+            for (int x = cellX - 1; x <= cellX + 1; x++) {
+                for (int y = cellY - 1; y <= cellY + 1; y++) {
+                    int cell = grid.cellIndex(x, y);
+                    if (cell < 0) continue;
+                    for (int slot = grid.cellStart(cell), end = grid.cellEnd(cell); slot < end; slot++) {
+                        int j = grid.particleAt(slot);
+                        if (j <= i) continue;
+
+                        double dx = refX(j) - refX(i);
+                        double dy = refY(j) - refY(i);
+                        if (dx * dx + dy * dy < rangeSq) {
+                            addPair(i, j);
+                        }
+                    }
+                }
+            }
+
+            sortRow(pairJ, false, pairStart[i], pairCount);
+        }
+        pairStart[size] = pairCount;
+
+        mergeSprings();
+
+        buildAdjacency();
+        colorCells();
+    }
+
+    /**
+     * index the pairs by both of their particles
+     */
+    private void buildAdjacency() {
+        if (adjPair.length < 2 * pairCount) {
+            adjPair = new int[Math.max(2 * pairCount, adjPair.length * 2)];
+        }
+        Arrays.fill(adjStart, 0, size + 1, 0);
+        for (int p = 0; p < pairCount; p++) {
+            adjStart[pairI[p] + 1]++;
+            adjStart[pairJ[p] + 1]++;
+        }
+        for (int i = 0; i < size; i++) {
+            adjStart[i + 1] += adjStart[i];
+        }
+        for (int p = 0; p < pairCount; p++) {
+            adjPair[adjStart[pairI[p]]++] = p;
+            adjPair[adjStart[pairJ[p]]++] = p;
+        }
+        for (int i = size; i > 0; i--) {
+            adjStart[i] = adjStart[i - 1];
+        }
+        adjStart[0] = 0;
+    }
+
+    /**
+     * copy the binning of the grid, with the cells ordered by color
+     */
+    private void colorCells() {
+        int cells = grid.cellCount();
+        if (cellBegin.length < cells + 1) {
+            cellBegin = new int[Math.max(cells + 1, cellBegin.length * 2)];
+        }
+
+        Arrays.fill(colorStart, 0);
+        Arrays.fill(colorParticles, 0);
+        for (int cell = 0; cell < cells; cell++) {
+            int count = grid.cellEnd(cell) - grid.cellStart(cell);
+            if (count == 0) continue;
+
+            int color = color(cell);
+            colorStart[color + 1]++;
+            colorParticles[color + 1] += count;
+        }
+        for (int c = 0; c < COLORS; c++) {
+            colorStart[c + 1] += colorStart[c];
+            colorParticles[c + 1] += colorParticles[c];
+        }
+
+        System.arraycopy(colorStart, 0, colorNext, 0, COLORS);
+        for (int cell = 0; cell < cells; cell++) {
+            int start = grid.cellStart(cell);
+            int end = grid.cellEnd(cell);
+            if (start == end) continue;
+
+            int color = color(cell);
+            int slot = colorParticles[color];
+            cellBegin[colorNext[color]++] = slot;
+            for (int s = start; s < end; s++) {
+                cellParticles[slot++] = grid.particleAt(s);
+            }
+            colorParticles[color] = slot;
+        }
+        cellBegin[colorStart[COLORS]] = size;
+    }
+
+    private int color(int cell) {
+        int particle = grid.particleAt(grid.cellStart(cell));
+        return Math.floorMod(grid.cellX(particle), 3) * 3 + Math.floorMod(grid.cellY(particle), 3);
+    }
+
+    private void mergeSprings() {
+        springCount = 0;
+        for (int i = 0; i < size; i++) {
+            int o = 0;
+            int oEnd = 0;
+            if (i < previousSize) {
+                o = previousStart[i];
+                oEnd = previousStart[i + 1];
+            }
+
+            for (int p = pairStart[i]; p < pairStart[i + 1]; p++) {
+                while (o < oEnd && previousJ[o] < pairJ[p]) o++;
+
+                if (o < oEnd && previousJ[o] == pairJ[p] && previousRest(o) == previousRest(o)) {
+                    setRest(p, previousRest(o));
+                    springCount++;
+                } else {
+                    setRest(p, Double.NaN);
+                }
+            }
+        }
+    }
+
+    /**
+     * insertion sort of a (short) row by particle index, moving the previous rest lengths along if rests is set
+     */
+    private void sortRow(int[] js, boolean rests, int from, int to) {
+        for (int a = from + 1; a < to; a++) {
+            int j = js[a];
+            double rest = rests ? previousRest(a) : 0;
+            int b = a - 1;
+            while (b >= from && js[b] > j) {
+                js[b + 1] = js[b];
+                if (rests) setPreviousRest(b + 1, previousRest(b));
+                b--;
+            }
+            js[b + 1] = j;
+            if (rests) setPreviousRest(b + 1, rest);
+        }
+    }
+
+    private void addPair(int i, int j) {
+        if (pairCount == pairI.length || pairCount == pairJ.length) {
+            ensurePairs(pairCount + 1);
+        }
+
+        pairI[pairCount] = i;
+        pairJ[pairCount] = j;
+        pairCount++;
+    }
+}
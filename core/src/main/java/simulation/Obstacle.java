@@ -0,0 +1,57 @@
+package simulation;
+
+public interface Obstacle {
+    void draw(DrawSurface context);
+
+    void handleCollision(double x, double y, CollisionHandler collision);
+
+    /**
+     * resolve the collisions of the particles particles[from] .. particles[to - 1] in place, pushing particles closer
+     * than radius out and damping their tangential velocity by friction. Implementations specialise this loop, the
+     * default goes through handleCollision point by point.
+     */
+    default void collide(int[] particles, int from, int to, double[] X, double[] Y, double[] oldX, double[] oldY,
+                         double radius, double friction) {
+        // one handler for the whole range, it reads the current particle from the array
+        int[] current = new int[1];
+        CollisionHandler handler = (nx, ny, dist) -> respond(current[0], nx, ny, dist, X, Y, oldX, oldY, radius, friction);
+        for (int k = from; k < to; k++) {
+            int i = particles[k];
+            current[0] = i;
+            handleCollision(X[i], Y[i], handler);
+        }
+    }
+
+    /**
+     * move particle i out to radius along the normal and apply friction to its tangential velocity, if it is closer
+     * than radius
+     */
+    static void respond(int i, double nx, double ny, double dist, double[] X, double[] Y, double[] oldX, double[] oldY,
+                        double radius, double friction) {
+        if (dist < radius) {
+            double velocityX = X[i] - oldX[i];
+            double velocityY = Y[i] - oldY[i];
+
+            double vNormalX = (velocityX * nx + velocityY * ny) * nx;
+            double vNormalY = (velocityX * nx + velocityY * ny) * ny;
+
+            double vTangentX = vNormalX - velocityX;
+            double vTangentY = vNormalY - velocityY;
+
+            X[i] += (-dist + radius) * nx + friction * vTangentX;
+            Y[i] += (-dist + radius) * ny + friction * vTangentY;
+        }
+    }
+
+    /**
+     * @return a box containing every point with a negative distance to the obstacle
+     */
+    default Bounds getBounds() {
+        return Bounds.UNBOUNDED;
+    }
+
+    @FunctionalInterface
+    interface CollisionHandler {
+        void handle(double nx, double ny, double distance);
+    }
+}
@@ -0,0 +1,287 @@
+package simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * static broadphase over a list of obstacles. The bounded obstacles are binned into a uniform grid of cells, each cell
+ * lists the obstacles whose bounds, grown by a margin, overlap it. Unbounded obstacles are listed in every cell and
+ * make up the candidates of points outside the grid. Candidates keep the order of the original list.
+ *
+ * For batched collisions the particles are binned into the same cells. A bounded obstacle then collides with the
+ * particles of the cells it overlaps, row by row, an unbounded one with all particles. Obstacles go in list order, so
+ * every particle sees its candidates in the same order as through the per cell lists.
+ *
+ * Obstacles work on double positions. Particles in float storage are handed to them in chunks, copied to double
+ * arrays and rounded back after each obstacle.
+ */
+class ObstacleIndex<T extends Obstacle> {
+    private static final int MAX_CELLS = 1 << 20;
+    private static final int CHUNK = 256;
+
+    private final double minX;
+    private final double minY;
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+
+    // candidates of cell c are obstacles[cellStart[c]] .. obstacles[cellStart[c + 1] - 1], the cell after the last one
+    // holds the candidates outside the grid
+    private final int[] cellStart;
+    private final Obstacle[] obstacles;
+
+    // the original list and the cells covered by each obstacle as x0, x1, y0, y1, null for unbounded ones
+    private final Obstacle[] list;
+    private final int[][] covered;
+
+    // particles binned by cell, particles of cell c are binned[binStart[c]] .. binned[binStart[c + 1] - 1]
+    private int[] binStart;
+    private int[] binned = new int[0];
+    private int[] binCell = new int[0];
+
+    // double copies of a chunk of binned particles in float storage, chunk particle k is at index k
+    private final int[] chunkIndex = new int[CHUNK];
+    private final double[] chunkX = new double[CHUNK];
+    private final double[] chunkY = new double[CHUNK];
+    private final double[] chunkOldX = new double[CHUNK];
+    private final double[] chunkOldY = new double[CHUNK];
+
+    /**
+     * @param margin distance to an obstacle's bounds within which it stays a candidate
+     */
+    ObstacleIndex(List<T> list, double margin, double cellSize) {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+
+        Bounds[] bounds = new Bounds[list.size()];
+        for (int k = 0; k < bounds.length; k++) {
+            Bounds b = list.get(k).getBounds();
+            if (b.isBounded()) {
+                b = new Bounds(b.minX - margin, b.minY - margin, b.maxX + margin, b.maxY + margin);
+                minX = Math.min(minX, b.minX);
+                minY = Math.min(minY, b.minY);
+                maxX = Math.max(maxX, b.maxX);
+                maxY = Math.max(maxY, b.maxY);
+                bounds[k] = b;
+            }
+        }
+
+        if (minX > maxX) {
+            // nothing bounded, a single cell outside of the empty grid
+            minX = minY = maxX = maxY = 0;
+        }
+
+        // grow the cells until the grid fits
+        while ((Math.floor((maxX - minX) / cellSize) + 1) * (Math.floor((maxY - minY) / cellSize) + 1) > MAX_CELLS) {
+            cellSize *= 2;
+        }
+
+        this.minX = minX;
+        this.minY = minY;
+        this.cellSize = cellSize;
+        columns = (int) ((maxX - minX) / cellSize) + 1;
+        rows = (int) ((maxY - minY) / cellSize) + 1;
+
+        this.list = list.toArray(new Obstacle[0]);
+        covered = new int[bounds.length][];
+
+        int cells = columns * rows + 1;
+        List<List<Obstacle>> candidates = new ArrayList<>(cells);
+        for (int c = 0; c < cells; c++) {
+            candidates.add(new ArrayList<>());
+        }
+
+        for (int k = 0; k < bounds.length; k++) {
+            Obstacle obstacle = list.get(k);
+            if (bounds[k] == null) {
+                for (var cell : candidates) cell.add(obstacle);
+                continue;
+            }
+
+            int x0 = column(bounds[k].minX);
+            int x1 = column(bounds[k].maxX);
+            int y0 = row(bounds[k].minY);
+            int y1 = row(bounds[k].maxY);
+            covered[k] = new int[] { x0, x1, y0, y1 };
+            for (int y = y0; y <= y1; y++) {
+                for (int x = x0; x <= x1; x++) {
+                    candidates.get(y * columns + x).add(obstacle);
+                }
+            }
+        }
+
+        for (int k = 0; k < CHUNK; k++) {
+            chunkIndex[k] = k;
+        }
+
+        binStart = new int[cells + 1];
+        cellStart = new int[cells + 1];
+        for (int c = 0; c < cells; c++) {
+            cellStart[c + 1] = cellStart[c] + candidates.get(c).size();
+        }
+        obstacles = new Obstacle[cellStart[cells]];
+        for (int c = 0; c < cells; c++) {
+            List<Obstacle> cell = candidates.get(c);
+            for (int k = 0; k < cell.size(); k++) {
+                obstacles[cellStart[c] + k] = cell.get(k);
+            }
+        }
+    }
+
+    private int column(double x) {
+        return Math.min(Math.max((int) Math.floor((x - minX) / cellSize), 0), columns - 1);
+    }
+
+    private int row(double y) {
+        return Math.min(Math.max((int) Math.floor((y - minY) / cellSize), 0), rows - 1);
+    }
+
+    /**
+     * @return the cell holding the candidates of the point
+     */
+    int cell(double x, double y) {
+        double fx = (x - minX) / cellSize;
+        double fy = (y - minY) / cellSize;
+        if (fx >= 0 && fy >= 0 && fx < columns && fy < rows) {
+            return (int) fy * columns + (int) fx;
+        }
+        return columns * rows;
+    }
+
+    int cellStart(int cell) {
+        return cellStart[cell];
+    }
+
+    int cellEnd(int cell) {
+        return cellStart[cell + 1];
+    }
+
+    @SuppressWarnings("unchecked")
+    T candidate(int slot) {
+        return (T) obstacles[slot];
+    }
+
+    /**
+     * resolve the collisions of the particles particles[0] .. particles[count - 1] with all obstacles, see
+     * {@link Obstacle#collide}
+     */
+    void collide(double[] X, double[] Y, double[] oldX, double[] oldY, int[] particles, int count, double radius,
+                 double friction) {
+        ensureBins(count);
+        for (int k = 0; k < count; k++) {
+            int i = particles[k];
+            binCell[k] = cell(X[i], Y[i]);
+        }
+        bin(particles, count);
+
+        for (int k = 0; k < list.length; k++) {
+            int[] cells = covered[k];
+            if (cells == null) {
+                list[k].collide(binned, 0, count, X, Y, oldX, oldY, radius, friction);
+                continue;
+            }
+
+            // the covered cells of a row are consecutive, so are their particles
+            for (int y = cells[2]; y <= cells[3]; y++) {
+                int from = binStart[y * columns + cells[0]];
+                int to = binStart[y * columns + cells[1] + 1];
+                if (from < to) {
+                    list[k].collide(binned, from, to, X, Y, oldX, oldY, radius, friction);
+                }
+            }
+        }
+    }
+
+    /**
+     * {@link #collide(double[], double[], double[], double[], int[], int, double, double)} for particles in float
+     * storage
+     */
+    void collide(float[] X, float[] Y, float[] oldX, float[] oldY, int[] particles, int count, double radius,
+                 double friction) {
+        ensureBins(count);
+        for (int k = 0; k < count; k++) {
+            int i = particles[k];
+            binCell[k] = cell(X[i], Y[i]);
+        }
+        bin(particles, count);
+
+        for (int k = 0; k < list.length; k++) {
+            int[] cells = covered[k];
+            if (cells == null) {
+                collideChunks(list[k], 0, count, X, Y, oldX, oldY, radius, friction);
+                continue;
+            }
+
+            for (int y = cells[2]; y <= cells[3]; y++) {
+                int from = binStart[y * columns + cells[0]];
+                int to = binStart[y * columns + cells[1] + 1];
+                if (from < to) {
+                    collideChunks(list[k], from, to, X, Y, oldX, oldY, radius, friction);
+                }
+            }
+        }
+    }
+
+    /**
+     * collide the binned particles from .. to - 1 in float storage through their double copies
+     */
+    private void collideChunks(Obstacle obstacle, int from, int to, float[] X, float[] Y, float[] oldX, float[] oldY,
+                               double radius, double friction) {
+        for (int start = from; start < to; start += CHUNK) {
+            int end = Math.min(to, start + CHUNK);
+            for (int k = start; k < end; k++) {
+                int i = binned[k];
+                chunkX[k - start] = X[i];
+                chunkY[k - start] = Y[i];
+                chunkOldX[k - start] = oldX[i];
+                chunkOldY[k - start] = oldY[i];
+            }
+
+            obstacle.collide(chunkIndex, 0, end - start, chunkX, chunkY, chunkOldX, chunkOldY, radius, friction);
+
+            for (int k = start; k < end; k++) {
+                int i = binned[k];
+                X[i] = (float) chunkX[k - start];
+                Y[i] = (float) chunkY[k - start];
+            }
+        }
+    }
+
+    private void ensureBins(int count) {
+        if (binned.length < count) {
+            binned = new int[Math.max(count, binned.length * 2)];
+            binCell = new int[binned.length];
+        }
+    }
+
+    /**
+     * counting sort of the particles by their cell in binCell
+     */
+    private void bin(int[] particles, int count) {
+        int cells = binStart.length - 1;
+        Arrays.fill(binStart, 0);
+        for (int k = 0; k < count; k++) {
+            binStart[binCell[k] + 1]++;
+        }
+        for (int c = 0; c < cells; c++) {
+            binStart[c + 1] += binStart[c];
+        }
+        for (int k = 0; k < count; k++) {
+            binned[binStart[binCell[k]]++] = particles[k];
+        }
+        for (int c = cells; c > 0; c--) {
+            binStart[c] = binStart[c - 1];
+        }
+        binStart[0] = 0;
+    }
+
+    /**
+     * @return total number of candidate entries, a measure of the index size
+     */
+    int size() {
+        return obstacles.length;
+    }
+}
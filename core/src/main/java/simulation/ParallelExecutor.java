@@ -0,0 +1,114 @@
+package simulation;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * runs index ranges on a fork join pool, split into a fixed number of chunks.
+ *
+ * A chunk is never executed by two threads at once, so per chunk scratch buffers can be used without
+ * synchronization. The tasks are allocated once and reused for every call.
+ */
+public class ParallelExecutor {
+    // chunks per thread, more chunks balance uneven ranges better
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    // worker threads are named WORKER_PREFIX + their pool index
+    static final String WORKER_PREFIX = "simulation-worker-";
+
+    @FunctionalInterface
+    public interface RangeTask {
+        void run(int chunk, int from, int to);
+    }
+
+    private final int threads;
+    private final int chunks;
+    private final ForkJoinPool pool;
+
+    private final ChunkAction[] actions;
+    private final RecursiveAction root;
+
+    private RangeTask task;
+    private int count;
+
+    public ParallelExecutor(int threads) {
+        this.threads = Math.max(1, threads);
+        this.chunks = this.threads == 1 ? 1 : this.threads * CHUNKS_PER_THREAD;
+        this.pool = this.threads == 1 ? null : new ForkJoinPool(this.threads, ParallelExecutor::newWorker, null, false);
+
+        actions = new ChunkAction[chunks];
+        for (int c = 0; c < chunks; c++) {
+            actions[c] = new ChunkAction(c);
+        }
+        root = new RecursiveAction() {
+            @Override
+            protected void compute() {
+                // only fork, a join of a chunk another thread runs would allocate a node to wait on
+                for (var action : actions) action.fork();
+            }
+        };
+    }
+
+    private static ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        worker.setName(WORKER_PREFIX + worker.getPoolIndex());
+        return worker;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return number of chunks, i.e. the range of the chunk index passed to tasks
+     */
+    public int getChunks() {
+        return chunks;
+    }
+
+    /**
+     * run task over 0 .. count - 1 and wait for completion
+     */
+    public void forRange(int count, RangeTask task) {
+        if (pool == null || count < chunks) {
+            task.run(0, 0, count);
+            return;
+        }
+
+        this.task = task;
+        this.count = count;
+        for (var action : actions) action.reinitialize();
+        root.reinitialize();
+        try {
+            // invoke would allocate a node to wait on, waiting for the pool to go idle helps running chunks instead.
+            // All chunks are done then, joining only rethrows their exceptions
+            pool.execute(root);
+            pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            root.join();
+            for (var action : actions) action.join();
+        } finally {
+            this.task = null;
+        }
+    }
+
+    public void shutdown() {
+        if (pool != null) pool.shutdown();
+    }
+
+    private class ChunkAction extends RecursiveAction {
+        private final int chunk;
+
+        ChunkAction(int chunk) {
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            int from = (int) ((long) count * chunk / chunks);
+            int to = (int) ((long) count * (chunk + 1) / chunks);
+            task.run(chunk, from, to);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package simulation;
+
+/**
+ * one value per particle slot, stored in double or single precision. Values are computed in double either way, with
+ * float storage they are rounded when set and widened when read.
+ *
+ * The grid, the neighbour list and the obstacles take the raw arrays, {@link #values()} in double and
+ * {@link #singleValues()} in float storage, the other one is null.
+ */
+final class ParticleArray {
+    private boolean single;
+    private double[] values;
+    private float[] singleValues;
+
+    ParticleArray(int capacity, boolean single) {
+        this.single = single;
+        if (single) {
+            singleValues = new float[capacity];
+        } else {
+            values = new double[capacity];
+        }
+    }
+
+    double get(int i) {
+        return single ? singleValues[i] : values[i];
+    }
+
+    void set(int i, double value) {
+        if (single) {
+            singleValues[i] = (float) value;
+        } else {
+            values[i] = value;
+        }
+    }
+
+    void add(int i, double value) {
+        if (single) {
+            singleValues[i] += value;
+        } else {
+            values[i] += value;
+        }
+    }
+
+    /**
+     * copy the value of slot from to slot to
+     */
+    void move(int from, int to) {
+        if (single) {
+            singleValues[to] = singleValues[from];
+        } else {
+            values[to] = values[from];
+        }
+    }
+
+    /**
+     * copy the first count values of an array of the same precision
+     */
+    void copyFrom(ParticleArray source, int count) {
+        if (single) {
+            System.arraycopy(source.singleValues, 0, singleValues, 0, count);
+        } else {
+            System.arraycopy(source.values, 0, values, 0, count);
+        }
+    }
+
+    /**
+     * widen the first count values into target
+     */
+    void copyTo(double[] target, int count) {
+        if (!single) {
+            System.arraycopy(values, 0, target, 0, count);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            target[i] = singleValues[i];
+        }
+    }
+
+    /**
+     * overwrite the values with the start of source
+     */
+    void copyFrom(double[] source) {
+        int count = Math.min(source.length, capacity());
+        if (!single) {
+            System.arraycopy(source, 0, values, 0, count);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            singleValues[i] = (float) source[i];
+        }
+    }
+
+    /**
+     * @return all values widened to double
+     */
+    double[] toDoubles() {
+        double[] result = new double[capacity()];
+        copyTo(result, result.length);
+        return result;
+    }
+
+    /**
+     * move the value of slot i to newIndex[i] for the first count slots, scratch holds at least count values
+     */
+    void permute(int[] newIndex, int count, double[] scratch) {
+        copyTo(scratch, count);
+        for (int i = 0; i < count; i++) {
+            set(newIndex[i], scratch[i]);
+        }
+    }
+
+    /**
+     * switch between double and float storage, the current values are converted
+     */
+    void setFloatStorage(boolean single) {
+        if (this.single == single) return;
+
+        if (single) {
+            singleValues = new float[values.length];
+            for (int i = 0; i < values.length; i++) {
+                singleValues[i] = (float) values[i];
+            }
+            values = null;
+        } else {
+            values = toDoubles();
+            singleValues = null;
+        }
+        this.single = single;
+    }
+
+    boolean isFloatStorage() {
+        return single;
+    }
+
+    /**
+     * @return the values in double storage, null in float storage
+     */
+    double[] values() {
+        return values;
+    }
+
+    /**
+     * @return the values in float storage, null in double storage
+     */
+    float[] singleValues() {
+        return singleValues;
+    }
+
+    int capacity() {
+        return single ? singleValues.length : values.length;
+    }
+
+    long getMemoryBytes() {
+        return (long) capacity() * (single ? Float.BYTES : Double.BYTES);
+    }
+
+    /**
+     * append the first count values in their storage precision
+     */
+    void encode(Checkpoint.Encoder out, int count) {
+        if (single) {
+            out.putFloats(singleValues, count);
+        } else {
+            out.putDoubles(values, count);
+        }
+    }
+
+    /**
+     * read values appended by {@link #encode}, the storage precision has to match
+     */
+    void decode(Checkpoint.Decoder in) {
+        if (single) {
+            in.getFloats(singleValues);
+        } else {
+            in.getDoubles(values);
+        }
+    }
+}
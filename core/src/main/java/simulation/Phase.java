@@ -0,0 +1,20 @@
+package simulation;
+
+/**
+ * the parts of a single {@link FluidNew#simulate(double)} step, in execution order
+ */
+public enum Phase {
+    REORDER,
+    GRAVITY,
+    GRID_UPDATE,
+    VISCOSITY,
+    VELOCITY_CLAMP,
+    INTEGRATE,
+    SPRING_ADJUST,
+    SPRING_DISPLACEMENT,
+    DENSITY_RELAXATION,
+    COLLISIONS,
+    VELOCITY_UPDATE,
+    SLEEP,
+    SINKS
+}
@@ -0,0 +1,29 @@
+package simulation;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * flight recorder event covering one phase of a simulation step
+ */
+@Name("simulation.Phase")
+@Label("Simulation Phase")
+@Category("Fluid Simulation")
+@StackTrace(false)
+@Description("One phase of FluidNew.simulate")
+class PhaseEvent extends jdk.jfr.Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Particles")
+    int particles;
+
+    @Label("Neighbour Pairs")
+    int pairs;
+
+    @Label("Springs")
+    int springs;
+}
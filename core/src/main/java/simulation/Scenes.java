@@ -0,0 +1,78 @@
+package simulation;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * the built in scenes by the name of their factory in {@link FluidNew}
+ */
+public final class Scenes {
+    private static final Map<String, Supplier<FluidNew>> SCENES = new LinkedHashMap<>();
+
+    // factories taking a particle count
+    private static final Map<String, IntFunction<FluidNew>> SIZED_SCENES = new LinkedHashMap<>();
+
+    static {
+        SIZED_SCENES.put("Stack", FluidNew::Stack);
+        SIZED_SCENES.put("DamBreak", FluidNew::DamBreak);
+        SIZED_SCENES.put("SloshingTank", FluidNew::SloshingTank);
+        SIZED_SCENES.put("ObstacleField", FluidNew::ObstacleField);
+
+        SCENES.put("HighViscosity", FluidNew::HighViscosity);
+        SCENES.put("LowViscosity", FluidNew::LowViscosity);
+        SCENES.put("Viscoelastic", FluidNew::Viscoelastic);
+        SCENES.put("Stack", () -> FluidNew.Stack(1000));
+        SCENES.put("TwoParticles", FluidNew::TwoParticles);
+        SCENES.put("Splash", FluidNew::Splash);
+        SCENES.put("End", FluidNew::End);
+        SCENES.put("SourceSink", FluidNew::SourceSink);
+        SCENES.put("Fountain", FluidNew::Fountain);
+        SCENES.put("Faucet", FluidNew::Faucet);
+        SCENES.put("DamBreak", () -> FluidNew.DamBreak(10_000));
+        SCENES.put("SloshingTank", () -> FluidNew.SloshingTank(10_000));
+        SCENES.put("ObstacleField", () -> FluidNew.ObstacleField(10_000));
+    }
+
+    private Scenes() {
+    }
+
+    public static Set<String> names() {
+        return Collections.unmodifiableSet(SCENES.keySet());
+    }
+
+    /**
+     * @return the scenes which take a particle count
+     */
+    public static Set<String> sizedNames() {
+        return Collections.unmodifiableSet(SIZED_SCENES.keySet());
+    }
+
+    /**
+     * create a scene by name, scenes taking a particle count take it after a colon, e.g. "DamBreak:100000"
+     */
+    public static FluidNew create(String name) {
+        int colon = name.indexOf(':');
+        if (colon >= 0) {
+            return create(name.substring(0, colon), Integer.parseInt(name.substring(colon + 1)));
+        }
+
+        Supplier<FluidNew> scene = SCENES.get(name);
+        if (scene == null) {
+            throw new IllegalArgumentException("unknown scene '" + name + "', expected one of " + SCENES.keySet());
+        }
+        return scene.get();
+    }
+
+    public static FluidNew create(String name, int particles) {
+        IntFunction<FluidNew> scene = SIZED_SCENES.get(name);
+        if (scene == null) {
+            throw new IllegalArgumentException("scene '" + name + "' does not take a particle count, expected one of "
+                    + SIZED_SCENES.keySet());
+        }
+        return scene.apply(particles);
+    }
+}
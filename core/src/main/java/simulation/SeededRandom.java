@@ -0,0 +1,41 @@
+package simulation;
+
+/**
+ * the linear congruential generator of {@link java.util.Random}, producing the same numbers for the same seed. Its
+ * state can be read and set, so a checkpoint resumes the sequence where it was taken.
+ */
+final class SeededRandom {
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private long state;
+
+    SeededRandom(long seed) {
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    /**
+     * @return the 48 bit state, not the seed it was created with
+     */
+    long getState() {
+        return state;
+    }
+
+    void setState(long state) {
+        this.state = state & MASK;
+    }
+
+    private int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    /**
+     * @return uniformly distributed in [0, 1)
+     */
+    double nextDouble() {
+        return (((long) next(26) << 27) + next(27)) * DOUBLE_UNIT;
+    }
+}
@@ -0,0 +1,305 @@
+package simulation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * the union of a set of bounded obstacles sampled on a grid, distance and outward normal per node. Lookups
+ * interpolate bilinearly, so a collision test costs the same no matter how many obstacles were baked.
+ *
+ * Baking halves the cell size until the largest distance error at the cell centers of the collision band is within
+ * the requested bound, or the grid would get too large. Baked fields are cached on disk under the directory in the
+ * system property simulation.sdf.cache (default: fluid-sim-sdf in the temp directory), keyed by the obstacles'
+ * descriptions and the bake parameters. Obstacles without their own toString describe only their identity, fields
+ * with one of them are not cached. A cache that can not be read or written is bypassed and the failure kept, see
+ * {@link #getCacheError}.
+ */
+class SignedDistanceField {
+    private static final int VERSION = 1;
+    private static final int MAX_NODES = 1 << 22;
+
+    private final double minX;
+    private final double minY;
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+
+    // distance, normal x and normal y per node, nodes in row major order
+    private final double[] nodes;
+
+    private final double error;
+
+    // why the disk cache could not be used, null if it could or the field is not cached
+    private IOException cacheError;
+
+    // results of the last lookup
+    double nx;
+    double ny;
+
+    private SignedDistanceField(double minX, double minY, double cellSize, int columns, int rows, double[] nodes,
+                                double error) {
+        this.minX = minX;
+        this.minY = minY;
+        this.cellSize = cellSize;
+        this.columns = columns;
+        this.rows = rows;
+        this.nodes = nodes;
+        this.error = error;
+    }
+
+    /**
+     * bake the obstacles or load them from the cache
+     *
+     * @param margin   distance around the obstacles the field covers, lookups further away report no contact
+     * @param cellSize initial node spacing
+     * @param maxError allowed difference to the analytic distance within the margin
+     */
+    static SignedDistanceField of(List<? extends Obstacle> obstacles, double margin, double cellSize, double maxError) {
+        Path cache = cacheFile(obstacles, margin, cellSize, maxError);
+        if (cache == null) return bake(obstacles, margin, cellSize, maxError);
+
+        IOException readError = null;
+        if (Files.isReadable(cache)) {
+            try {
+                return read(cache);
+            } catch (IOException e) {
+                readError = new IOException("ignoring unreadable distance field cache " + cache, e);
+            }
+        }
+
+        SignedDistanceField field = bake(obstacles, margin, cellSize, maxError);
+        field.cacheError = readError;
+        try {
+            field.write(cache);
+        } catch (IOException e) {
+            field.cacheError = new IOException("could not cache the distance field in " + cache, e);
+            if (readError != null) field.cacheError.addSuppressed(readError);
+        }
+        return field;
+    }
+
+    static SignedDistanceField bake(List<? extends Obstacle> obstacles, double margin, double cellSize,
+                                    double maxError) {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (var obstacle : obstacles) {
+            Bounds b = obstacle.getBounds();
+            if (!b.isBounded()) throw new IllegalArgumentException("can not bake the unbounded " + obstacle);
+            minX = Math.min(minX, b.minX - margin);
+            minY = Math.min(minY, b.minY - margin);
+            maxX = Math.max(maxX, b.maxX + margin);
+            maxY = Math.max(maxY, b.maxY + margin);
+        }
+        if (obstacles.isEmpty()) {
+            minX = minY = maxX = maxY = 0;
+        }
+
+        Exact exact = new Exact(obstacles);
+        while (true) {
+            int columns = (int) Math.ceil((maxX - minX) / cellSize) + 1;
+            int rows = (int) Math.ceil((maxY - minY) / cellSize) + 1;
+
+            double[] nodes = new double[3 * columns * rows];
+            for (int row = 0; row < rows; row++) {
+                for (int column = 0; column < columns; column++) {
+                    int node = 3 * (row * columns + column);
+                    exact.at(minX + column * cellSize, minY + row * cellSize);
+                    nodes[node] = exact.distance;
+                    nodes[node + 1] = exact.nx;
+                    nodes[node + 2] = exact.ny;
+                }
+            }
+
+            SignedDistanceField field = new SignedDistanceField(minX, minY, cellSize, columns, rows, nodes, 0);
+
+            // bilinear interpolation is worst half way between the nodes
+            double error = 0;
+            for (int row = 0; row < rows - 1; row++) {
+                for (int column = 0; column < columns - 1; column++) {
+                    double x = minX + (column + 0.5) * cellSize;
+                    double y = minY + (row + 0.5) * cellSize;
+                    exact.at(x, y);
+                    if (exact.distance < margin) {
+                        error = Math.max(error, Math.abs(field.distance(x, y, 0) - exact.distance));
+                    }
+                }
+            }
+
+            if (error <= maxError || (long) columns * rows * 4 > MAX_NODES) {
+                return new SignedDistanceField(minX, minY, cellSize, columns, rows, nodes, error);
+            }
+            cellSize /= 2;
+        }
+    }
+
+    /**
+     * @return the interpolated distance at the point, if it is below within the normal is left in nx / ny. Points
+     * outside the field report positive infinity.
+     */
+    double distance(double x, double y, double within) {
+        double fx = (x - minX) / cellSize;
+        double fy = (y - minY) / cellSize;
+        if (!(fx >= 0 && fy >= 0 && fx < columns - 1 && fy < rows - 1)) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        int column = (int) fx;
+        int row = (int) fy;
+        double tx = fx - column;
+        double ty = fy - row;
+
+        int n00 = 3 * (row * columns + column);
+        int n10 = n00 + 3;
+        int n01 = n00 + 3 * columns;
+        int n11 = n01 + 3;
+
+        double w00 = (1 - tx) * (1 - ty);
+        double w10 = tx * (1 - ty);
+        double w01 = (1 - tx) * ty;
+        double w11 = tx * ty;
+
+        double d = w00 * nodes[n00] + w10 * nodes[n10] + w01 * nodes[n01] + w11 * nodes[n11];
+        if (d < within) {
+            double gx = w00 * nodes[n00 + 1] + w10 * nodes[n10 + 1] + w01 * nodes[n01 + 1] + w11 * nodes[n11 + 1];
+            double gy = w00 * nodes[n00 + 2] + w10 * nodes[n10 + 2] + w01 * nodes[n01 + 2] + w11 * nodes[n11 + 2];
+            double length = Math.sqrt(gx * gx + gy * gy);
+            nx = length > 0 ? gx / length : 0;
+            ny = length > 0 ? gy / length : 0;
+        }
+        return d;
+    }
+
+    /**
+     * @return the largest distance error found while baking
+     */
+    double getError() {
+        return error;
+    }
+
+    double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * @return why the field was not read from or written to the disk cache, null if the cache worked or the field is
+     * not cached
+     */
+    IOException getCacheError() {
+        return cacheError;
+    }
+
+    /**
+     * @return the cache file of the baked obstacles, null if one of them has the default toString, which differs
+     * between runs
+     */
+    private static Path cacheFile(List<? extends Obstacle> obstacles, double margin, double cellSize,
+                                  double maxError) {
+        StringBuilder key = new StringBuilder();
+        key.append(VERSION).append(' ').append(margin).append(' ').append(cellSize).append(' ').append(maxError);
+        for (var obstacle : obstacles) {
+            String description = obstacle.toString();
+            if (description.equals(obstacle.getClass().getName() + "@" + Integer.toHexString(obstacle.hashCode()))) {
+                return null;
+            }
+            key.append('\n').append(description);
+        }
+
+        String hash;
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(key.toString().getBytes(StandardCharsets.UTF_8))) {
+                hex.append(String.format("%02x", b));
+            }
+            hash = hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        String directory = System.getProperty("simulation.sdf.cache",
+                Paths.get(System.getProperty("java.io.tmpdir"), "fluid-sim-sdf").toString());
+        return Paths.get(directory, hash + ".sdf");
+    }
+
+    private void write(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tmp = Files.createTempFile(file.getParent(), "sdf", ".tmp");
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(VERSION);
+            out.writeDouble(minX);
+            out.writeDouble(minY);
+            out.writeDouble(cellSize);
+            out.writeInt(columns);
+            out.writeInt(rows);
+            out.writeDouble(error);
+            for (double value : nodes) {
+                out.writeDouble(value);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static SignedDistanceField read(Path file) throws IOException {
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != VERSION) throw new IOException("unknown version");
+            double minX = in.readDouble();
+            double minY = in.readDouble();
+            double cellSize = in.readDouble();
+            int columns = in.readInt();
+            int rows = in.readInt();
+            double error = in.readDouble();
+            if (columns <= 0 || rows <= 0 || (long) columns * rows > MAX_NODES) throw new IOException("bad size");
+
+            double[] nodes = new double[3 * columns * rows];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = in.readDouble();
+            }
+            return new SignedDistanceField(minX, minY, cellSize, columns, rows, nodes, error);
+        }
+    }
+
+    /**
+     * analytic distance to the union of the obstacles, the closest obstacle wins
+     */
+    private static class Exact {
+        private final List<? extends Obstacle> obstacles;
+        private final Obstacle.CollisionHandler closest = this::closest;
+
+        double distance;
+        double nx;
+        double ny;
+
+        Exact(List<? extends Obstacle> obstacles) {
+            this.obstacles = obstacles;
+        }
+
+        void at(double x, double y) {
+            distance = Double.POSITIVE_INFINITY;
+            nx = 0;
+            ny = 0;
+            for (var obstacle : obstacles) {
+                obstacle.handleCollision(x, y, closest);
+            }
+        }
+
+        private void closest(double nx, double ny, double distance) {
+            if (distance < this.distance) {
+                this.distance = distance;
+                this.nx = nx == nx ? nx : 0;
+                this.ny = ny == ny ? ny : 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package simulation;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * steps a simulation on its own thread, so a slow step does not hold up the user interface. After every step the
+ * particles are published as a {@link Snapshot} through a triple buffer, a renderer draws the latest one whenever it
+ * likes. Changes from other threads are queued as commands and run on the simulation thread between two steps, they
+ * must not touch the simulation directly.
+ *
+ * while running the thread advances interval simulated time stepsPerSecond times a second, if a step takes longer it
+ * continues right away without catching up.
+ */
+public class SimulationThread {
+    private final FluidNew fluid;
+    private final double interval;
+    private final long period;
+
+    private final Thread thread;
+    private final ConcurrentLinkedQueue<Consumer<FluidNew>> commands = new ConcurrentLinkedQueue<>();
+    private final TripleBuffer<Snapshot> snapshots;
+    private long published = 0;
+
+    // writes checkpoints, created with the first one
+    private ExecutorService writer;
+
+    private volatile boolean running = false;
+    private volatile boolean stopped = false;
+
+    // steps per second over the last second
+    private volatile double stepRate = 0;
+
+    // the last exception thrown by a command or a step
+    private volatile RuntimeException failure;
+
+    public SimulationThread(FluidNew fluid, double interval, double stepsPerSecond) {
+        this.fluid = fluid;
+        this.interval = interval;
+        this.period = (long) (1e9 / stepsPerSecond);
+
+        int capacity = fluid.getCapacity();
+        snapshots = new TripleBuffer<>(new Snapshot(capacity), new Snapshot(capacity), new Snapshot(capacity));
+        publish();
+
+        thread = new Thread(this::run, "simulation");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public void setRunning(boolean running) {
+        this.running = running;
+        LockSupport.unpark(thread);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * run a command on the simulation thread before the next step
+     */
+    public void submit(Consumer<FluidNew> command) {
+        commands.add(command);
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * @return the latest snapshot, owned by the caller until its next call. Only one thread may read snapshots.
+     */
+    public Snapshot latest() {
+        return snapshots.latest();
+    }
+
+    /**
+     * take a checkpoint between two steps and write it to path on a background thread, the simulation only waits for
+     * the checkpoint to be encoded
+     *
+     * @return completes when the file is written, exceptionally if taking or writing the checkpoint failed
+     */
+    public CompletableFuture<Void> checkpoint(Path path) {
+        ExecutorService writer = writer();
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        submit(fluid -> {
+            try {
+                Checkpoint checkpoint = fluid.checkpoint();
+                writer.execute(() -> {
+                    try {
+                        checkpoint.write(path);
+                        written.complete(null);
+                    } catch (IOException | RuntimeException e) {
+                        written.completeExceptionally(e);
+                    }
+                });
+            } catch (RuntimeException e) {
+                // unknown obstacles, a checkpoint above 2 GB or a writer that is already shut down
+                written.completeExceptionally(e);
+            }
+        });
+        return written;
+    }
+
+    private synchronized ExecutorService writer() {
+        if (writer == null) {
+            writer = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "checkpoint");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return writer;
+    }
+
+    public double getStepRate() {
+        return stepRate;
+    }
+
+    /**
+     * a command that throws is skipped, a step that throws pauses the simulation. The thread keeps running either way.
+     *
+     * @return the last exception thrown by a command or a step, null if none did
+     */
+    public RuntimeException getFailure() {
+        return failure;
+    }
+
+    /**
+     * stop the thread after its current step and shut the simulation down, checkpoints already taken are still
+     * written
+     */
+    public void shutdown() {
+        stopped = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        fluid.shutdown();
+        synchronized (this) {
+            if (writer != null) writer.shutdown();
+        }
+    }
+
+    private void run() {
+        long next = System.nanoTime();
+        long rateStart = next;
+        int rateSteps = 0;
+        boolean wasRunning = false;
+
+        while (!stopped) {
+            boolean changed = false;
+            Consumer<FluidNew> command;
+            while ((command = commands.poll()) != null) {
+                try {
+                    command.accept(fluid);
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+                changed = true;
+            }
+
+            long now = System.nanoTime();
+            boolean running = this.running;
+            if (running && !wasRunning) {
+                next = now;
+            }
+            wasRunning = running;
+
+            // a command may wake the thread early, only step when the period is over
+            if (running && now - next >= 0) {
+                try {
+                    fluid.advance(interval);
+                } catch (RuntimeException e) {
+                    // stepping on would most likely throw again every period
+                    failure = e;
+                    this.running = false;
+                }
+                changed = true;
+                rateSteps++;
+                next = Math.max(next + period, now);
+            }
+
+            if (changed) {
+                publish();
+            }
+
+            if (now - rateStart >= 1_000_000_000L) {
+                stepRate = rateSteps * 1e9 / (now - rateStart);
+                rateStart = now;
+                rateSteps = 0;
+            }
+
+            if (running) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(this, wait);
+            } else {
+                stepRate = 0;
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    private void publish() {
+        Snapshot snapshot = snapshots.back();
+        fluid.copyTo(snapshot);
+        snapshot.version = ++published;
+        snapshots.publish();
+    }
+}
@@ -0,0 +1,30 @@
+package simulation;
+
+/**
+ * removes every particle entering its collider
+ */
+public class Sink implements Obstacle {
+
+    final Obstacle collider;
+
+    public Sink(Obstacle collider) {
+        this.collider = collider;
+    }
+
+    @Override
+    public void draw(DrawSurface context) {
+        context.setFill(DrawSurface.ORANGE);
+        context.setStroke(DrawSurface.ORANGE);
+        collider.draw(context);
+    }
+
+    @Override
+    public Bounds getBounds() {
+        return collider.getBounds();
+    }
+
+    @Override
+    public void handleCollision(double x, double y, Obstacle.CollisionHandler collision) {
+        collider.handleCollision(x, y, collision);
+    }
+}
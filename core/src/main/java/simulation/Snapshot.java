@@ -0,0 +1,81 @@
+package simulation;
+
+/**
+ * positions and velocities of the live particles between two steps, published by a {@link SimulationThread}. A
+ * reader owns the snapshot it got until it asks for the next one, nothing writes to it in between.
+ */
+public final class Snapshot {
+    final double[] X;
+    final double[] Y;
+    final double[] vX;
+    final double[] vY;
+    final int[] ids;
+    int count;
+
+    // particle index pairs of the springs, only filled while springs are drawn
+    int[] springs = new int[0];
+    int springCount;
+
+    // number of the publication, increases with every snapshot the simulation thread publishes
+    long version;
+
+    Snapshot(int capacity) {
+        X = new double[capacity];
+        Y = new double[capacity];
+        vX = new double[capacity];
+        vY = new double[capacity];
+        ids = new int[capacity];
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public double getX(int index) {
+        return X[index];
+    }
+
+    public double getY(int index) {
+        return Y[index];
+    }
+
+    public double getVX(int index) {
+        return vX[index];
+    }
+
+    public double getVY(int index) {
+        return vY[index];
+    }
+
+    /**
+     * @return the stable id of the particle at index, see {@link FluidNew#getParticleId}
+     */
+    public int getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * @return number of springs, 0 unless springs are drawn
+     */
+    public int getSpringCount() {
+        return springCount;
+    }
+
+    /**
+     * @return index of the first particle of a spring
+     */
+    public int getSpringI(int spring) {
+        return springs[2 * spring];
+    }
+
+    /**
+     * @return index of the second particle of a spring
+     */
+    public int getSpringJ(int spring) {
+        return springs[2 * spring + 1];
+    }
+}
@@ -1,11 +1,8 @@
 package simulation;
 
-import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.paint.Color;
-
 public class SourceAndSink implements Obstacle{
 
-    private final Obstacle sinkCollider;
+    final Obstacle sinkCollider;
     public final double sourceX;
     public final double sourceY;
     public final double sourceRadius;
@@ -22,12 +19,17 @@ public class SourceAndSink implements Obstacle{
     }
 
     @Override
-    public void draw(GraphicsContext context) {
-        context.setFill(Color.RED);
-        context.setStroke(Color.RED);
+    public void draw(DrawSurface context) {
+        context.setFill(DrawSurface.RED);
+        context.setStroke(DrawSurface.RED);
         sinkCollider.draw(context);
     }
 
+    @Override
+    public Bounds getBounds() {
+        return sinkCollider.getBounds();
+    }
+
     @Override
     public void handleCollision(double x, double y, Obstacle.CollisionHandler collision) {
         sinkCollider.handleCollision(x, y, collision);
@@ -0,0 +1,58 @@
+package simulation;
+
+public class Sphere implements Obstacle {
+
+    final double X;
+    final double Y;
+    final double R;
+
+    public Sphere(double x, double y, double r) {
+        this.X = x;
+        this.Y = y;
+        this.R = r;
+    }
+
+    @Override
+    public void draw(DrawSurface context) {
+        context.fillOval(X - R, Y - R, 2 * R, 2 * R);
+    }
+
+    @Override
+    public String toString() {
+        return "Sphere(" + X + ", " + Y + ", " + R + ")";
+    }
+
+    @Override
+    public Bounds getBounds() {
+        return new Bounds(X - R, Y - R, X + R, Y + R);
+    }
+
+    @Override
+    public void collide(int[] particles, int from, int to, double[] X, double[] Y, double[] oldX, double[] oldY,
+                        double radius, double friction) {
+        for (int k = from; k < to; k++) {
+            int i = particles[k];
+            double tx = X[i] - this.X;
+            double ty = Y[i] - this.Y;
+            double d = Math.sqrt(tx * tx + ty * ty);
+            if (d - R >= radius) continue;
+
+            double nx = (X[i] - this.X) / d;
+            double ny = (Y[i] - this.Y) / d;
+
+            Obstacle.respond(i, nx, ny, d - R, X, Y, oldX, oldY, radius, friction);
+        }
+    }
+
+    @Override
+    public void handleCollision(double x, double y, CollisionHandler collision) {
+        double tx = x - X;
+        double ty = y - Y;
+        double d = Math.sqrt(tx * tx + ty * ty);
+
+        double nx = (x - X) / d;
+        double ny = (y - Y) / d;
+
+        collision.handle(nx, ny, d - R);
+    }
+}
@@ -0,0 +1,29 @@
+package simulation;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * flight recorder event covering a whole simulation step, its phases are nested PhaseEvents
+ */
+@Name("simulation.Step")
+@Label("Simulation Step")
+@Category("Fluid Simulation")
+@StackTrace(false)
+@Description("One call of FluidNew.simulate")
+class StepEvent extends jdk.jfr.Event {
+    @Label("Frame")
+    long frame;
+
+    @Label("Particles")
+    int particles;
+
+    @Label("Neighbour Pairs")
+    int pairs;
+
+    @Label("Springs")
+    int springs;
+}
@@ -0,0 +1,54 @@
+package simulation;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * hands values from one writer to one reader without locks. The writer fills the back buffer and publishes it, the
+ * reader takes the latest published buffer. Neither waits for the other, a value the reader never took is
+ * overwritten by the next one.
+ */
+final class TripleBuffer<T> {
+    // set in middle when the writer published it after the reader last took it
+    private static final int FRESH = 4;
+
+    private final Object[] buffers;
+
+    // index of the buffer between writer and reader, with the FRESH bit
+    private final AtomicInteger middle = new AtomicInteger(1);
+
+    // owned by the writer
+    private int back = 0;
+
+    // owned by the reader
+    private int front = 2;
+
+    TripleBuffer(T first, T second, T third) {
+        buffers = new Object[] { first, second, third };
+    }
+
+    /**
+     * @return the buffer the writer fills next, only for the writer
+     */
+    @SuppressWarnings("unchecked")
+    T back() {
+        return (T) buffers[back];
+    }
+
+    /**
+     * make the back buffer the latest one and continue with another
+     */
+    void publish() {
+        back = middle.getAndSet(back | FRESH) & ~FRESH;
+    }
+
+    /**
+     * @return the latest published buffer, only for the reader. It stays the reader's until the next call.
+     */
+    @SuppressWarnings("unchecked")
+    T latest() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & ~FRESH;
+        }
+        return (T) buffers[front];
+    }
+}
@@ -0,0 +1,85 @@
+package simulation;
+
+public class Wall implements Obstacle {
+    // tangential vector
+    final double tx;
+    final double ty;
+
+    // normal vector
+    final double nx;
+    final double ny;
+
+    // start vector
+    final double sx;
+    final double sy;
+
+    /**
+     * construct wall with point on wall and direction vector
+     */
+    public Wall(double sx, double sy, double tx, double ty) {
+        this(sx, sy, tx, ty, Math.sqrt(tx * tx + ty * ty));
+    }
+
+    private Wall(double sx, double sy, double tx, double ty, double d) {
+        this.sx = sx;
+        this.sy = sy;
+
+        this.tx = tx / d;
+        this.ty = ty / d;
+
+        this.nx = -this.ty;
+        this.ny = this.tx;
+    }
+
+    /**
+     * @return a wall whose direction is a unit vector already, taken over bit by bit instead of normalized again
+     */
+    static Wall normalized(double sx, double sy, double tx, double ty) {
+        return new Wall(sx, sy, tx, ty, 1);
+    }
+
+    @Override
+    public void draw(DrawSurface context) {
+        double length = 1000;
+        double width = 50;
+
+        context.fillPolygon(new double[] {
+                sx,
+                sx + length * tx,
+                sx + length * tx + width * ty,
+                sx - length * tx + width * ty,
+                sx - length * tx
+        }, new double[] {
+                sy,
+                sy + length * ty,
+                sy + length * ty - width * tx,
+                sy - length * ty - width * tx,
+                sy - length * ty
+        }, 5);
+    }
+
+    @Override
+    public String toString() {
+        return "Wall(" + sx + ", " + sy + ", " + tx + ", " + ty + ")";
+    }
+
+    @Override
+    public void collide(int[] particles, int from, int to, double[] X, double[] Y, double[] oldX, double[] oldY,
+                        double radius, double friction) {
+        for (int k = from; k < to; k++) {
+            int i = particles[k];
+            double d = (X[i] - sx) * nx + (Y[i] - sy) * ny;
+
+            Obstacle.respond(i, nx, ny, d, X, Y, oldX, oldY, radius, friction);
+        }
+    }
+
+    // a wall is a half plane, it keeps the default unbounded box
+
+    @Override
+    public void handleCollision(double x, double y, CollisionHandler collision) {
+        double d = (x - sx) * nx + (y - sy) * ny;
+
+        collision.handle(nx, ny, d);
+    }
+}
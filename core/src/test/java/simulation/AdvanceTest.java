@@ -0,0 +1,39 @@
+package simulation;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * advancing with adaptive sub-steps must keep every particle finite, also in scenes without gravity where resting
+ * fluid has no acceleration to bound the step with
+ */
+public class AdvanceTest {
+    private static final double DELTA_T = 0.0333333;
+    private static final int STEPS = 100;
+
+    @Test
+    public void finite() {
+        for (String scene : Scenes.names()) {
+            FluidNew fluid = Scenes.create(scene);
+            try {
+                for (int step = 0; step < STEPS; step++) {
+                    assertTrue(scene + ": sub-steps", fluid.advance(2 * DELTA_T) > 0);
+                    assertFinite(scene + " after step " + step, fluid);
+                }
+            } finally {
+                fluid.shutdown();
+            }
+        }
+    }
+
+    private static void assertFinite(String message, FluidNew fluid) {
+        for (int i = 0; i < fluid.getParticleCount(); i++) {
+            String particle = message + ": particle " + i;
+            assertTrue(particle + " x", Double.isFinite(fluid.getX(i)));
+            assertTrue(particle + " y", Double.isFinite(fluid.getY(i)));
+            assertTrue(particle + " vx", Double.isFinite(fluid.getVX(i)));
+            assertTrue(particle + " vy", Double.isFinite(fluid.getVY(i)));
+        }
+    }
+}
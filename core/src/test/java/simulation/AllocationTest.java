@@ -0,0 +1,140 @@
+package simulation;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * a warmed up step must not allocate, so long runs do not stutter from GC pauses. The bytes are taken from the thread
+ * MXBean for every step, for the calling thread and the executor's workers. Arrays still grow now and then, when a
+ * scene reaches new grid cells or more pairs than before, so a scene passes once STEPS steps in a row allocated
+ * nothing. A step that allocates every time never gets there and fails after MAX_STEPS.
+ */
+public class AllocationTest {
+    private static final double DELTA_T = 0.0333333;
+    private static final int WARMUP_STEPS = 600;
+    private static final int STEPS = 200;
+    private static final int MAX_STEPS = 4_000;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    public void simulate() {
+        for (String scene : scenes()) {
+            FluidNew fluid = Scenes.create(scene);
+            assertNoAllocation(scene, fluid, () -> fluid.simulate(DELTA_T));
+        }
+    }
+
+    @Test
+    public void advance() {
+        for (String scene : scenes()) {
+            FluidNew fluid = Scenes.create(scene);
+            assertNoAllocation(scene, fluid, () -> fluid.advance(2 * DELTA_T));
+        }
+    }
+
+    @Test
+    public void parallel() {
+        for (String scene : scenes()) {
+            FluidNew fluid = Scenes.create(scene);
+            fluid.setThreads(2);
+            fluid.setExecutionMode(FluidNew.ExecutionMode.PARALLEL);
+            assertNoAllocation(scene, fluid, () -> fluid.simulate(DELTA_T));
+        }
+    }
+
+    @Test
+    public void floatStorage() {
+        for (String scene : scenes()) {
+            FluidNew fluid = Scenes.create(scene);
+            fluid.setStorage(FluidNew.Storage.FLOAT);
+            assertNoAllocation(scene, fluid, () -> fluid.simulate(DELTA_T));
+        }
+    }
+
+    /**
+     * most of the resting HighViscosity pool falls asleep, and particles keep waking up
+     */
+    @Test
+    public void sleeping() {
+        FluidNew fluid = Scenes.create("HighViscosity");
+        fluid.setSleeping(true);
+        double[] active = { 1, 1 };
+        int[] wakes = { 0 };
+        assertNoAllocation("HighViscosity", fluid, () -> {
+            double before = fluid.getActiveFraction();
+            fluid.simulate(DELTA_T);
+            active[0] = Math.min(active[0], fluid.getActiveFraction());
+            if (fluid.getActiveFraction() > before) wakes[0]++;
+        });
+
+        assertTrue("particles sleep", active[0] < 1);
+        assertTrue("particles wake", wakes[0] > 0);
+    }
+
+    /**
+     * @return the built in scenes, the stack of 1000 particles flies apart and keeps adding grid blocks, so the stack
+     * is tested with 100
+     */
+    private static List<String> scenes() {
+        return Scenes.names().stream().map(scene -> scene.equals("Stack") ? "Stack:100" : scene)
+                .collect(Collectors.toList());
+    }
+
+    private static void assertNoAllocation(String scene, FluidNew fluid, Runnable step) {
+        try {
+            for (int i = 0; i < WARMUP_STEPS; i++) {
+                step.run();
+            }
+
+            long[] threads = threads();
+            int quiet = 0;
+            long allocated = 0;
+            for (int i = 0; quiet < STEPS && i < MAX_STEPS; i++) {
+                long before = allocatedBytes(threads);
+                step.run();
+                long bytes = allocatedBytes(threads) - before;
+                if (bytes != 0) allocated = bytes;
+                quiet = bytes == 0 ? quiet + 1 : 0;
+            }
+
+            assertTrue(scene + ": executor threads changed", Arrays.equals(threads, threads()));
+            assertEquals(scene + ": steps in a row without allocation, the last allocating step took " + allocated
+                    + " bytes", STEPS, quiet);
+        } finally {
+            fluid.shutdown();
+        }
+    }
+
+    /**
+     * @return ids of the calling thread and the executor's worker threads
+     */
+    private static long[] threads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread == Thread.currentThread()
+                        || thread.getName().startsWith(ParallelExecutor.WORKER_PREFIX))
+                .mapToLong(Thread::getId)
+                .sorted()
+                .toArray();
+    }
+
+    /**
+     * @return bytes the threads allocated so far, asked one thread at a time, since asking for several returns a new
+     * array
+     */
+    private static long allocatedBytes(long[] threads) {
+        long bytes = 0;
+        for (long thread : threads) {
+            bytes += THREADS.getThreadAllocatedBytes(thread);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,144 @@
+package simulation;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * taking a checkpoint must not change the simulation, and a simulation restored from it must continue bit identical
+ * to the one it was taken from. Particles are compared by their raw bits, so -0.0 and 0.0 differ.
+ */
+public class CheckpointTest {
+    private static final double DELTA_T = 0.0333333;
+    private static final int STEPS = 200;
+    private static final int CHECKPOINT_INTERVAL = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void checkpointOnlyReads() {
+        for (String scene : Scenes.names()) {
+            FluidNew fluid = Scenes.create(scene);
+            FluidNew checkpointed = Scenes.create(scene);
+            try {
+                for (int i = 1; i <= STEPS; i++) {
+                    fluid.simulate(DELTA_T);
+                    checkpointed.simulate(DELTA_T);
+                    if (i % CHECKPOINT_INTERVAL == 0) checkpointed.checkpoint();
+                }
+                assertSameParticles(scene, fluid, checkpointed);
+            } finally {
+                fluid.shutdown();
+                checkpointed.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void restore() throws IOException {
+        for (String scene : Scenes.names()) {
+            assertRestoreContinues(scene, () -> Scenes.create(scene), fluid -> fluid.simulate(DELTA_T));
+        }
+    }
+
+    @Test
+    public void restoreAdvance() throws IOException {
+        assertRestoreContinues("End", () -> Scenes.create("End"), fluid -> fluid.advance(2 * DELTA_T));
+    }
+
+    @Test
+    public void restoreSleeping() throws IOException {
+        assertRestoreContinues("HighViscosity", () -> {
+            FluidNew fluid = Scenes.create("HighViscosity");
+            fluid.setSleeping(true);
+            return fluid;
+        }, fluid -> fluid.simulate(DELTA_T));
+    }
+
+    @Test
+    public void restoreFloatStorage() throws IOException {
+        assertRestoreContinues("Viscoelastic", () -> {
+            FluidNew fluid = Scenes.create("Viscoelastic");
+            fluid.setStorage(FluidNew.Storage.FLOAT);
+            return fluid;
+        }, fluid -> fluid.simulate(DELTA_T));
+    }
+
+    @Test
+    public void restoreParallel() throws IOException {
+        assertRestoreContinues("LowViscosity", () -> {
+            FluidNew fluid = Scenes.create("LowViscosity");
+            fluid.setThreads(2);
+            fluid.setExecutionMode(FluidNew.ExecutionMode.PARALLEL);
+            return fluid;
+        }, fluid -> fluid.simulate(DELTA_T));
+    }
+
+    /**
+     * particles killed since the last step are compacted by the next one, a checkpoint in between keeps them
+     */
+    @Test
+    public void restoreKilled() throws IOException {
+        assertRestoreContinues("Splash", () -> {
+            FluidNew fluid = Scenes.create("Splash");
+            for (int i = 0; i < STEPS; i++) {
+                fluid.simulate(DELTA_T);
+            }
+            for (int i = 0; i < 10; i++) {
+                fluid.kill(7 * i);
+            }
+            return fluid;
+        }, fluid -> fluid.simulate(DELTA_T));
+    }
+
+    /**
+     * checkpoint a scene after STEPS steps through a file, then step it and the restored one STEPS more steps
+     */
+    private void assertRestoreContinues(String scene, Supplier<FluidNew> create, Consumer<FluidNew> step)
+            throws IOException {
+        FluidNew fluid = create.get();
+        FluidNew restored = null;
+        try {
+            for (int i = 0; i < STEPS; i++) {
+                step.accept(fluid);
+            }
+            Path path = folder.newFile().toPath();
+            fluid.checkpoint().write(path);
+            restored = FluidNew.restore(Checkpoint.read(path));
+
+            for (int i = 0; i < STEPS; i++) {
+                step.accept(fluid);
+                step.accept(restored);
+            }
+            assertSameParticles(scene, fluid, restored);
+        } finally {
+            fluid.shutdown();
+            if (restored != null) restored.shutdown();
+        }
+    }
+
+    private static void assertSameParticles(String scene, FluidNew expected, FluidNew actual) {
+        assertEquals(scene + ": particles", expected.getParticleCount(), actual.getParticleCount());
+        for (int i = 0; i < expected.getParticleCount(); i++) {
+            String particle = scene + ": particle " + i;
+            assertEquals(particle, expected.getParticleId(i), actual.getParticleId(i));
+            assertEquals(particle + " x", bits(expected.getX(i)), bits(actual.getX(i)));
+            assertEquals(particle + " y", bits(expected.getY(i)), bits(actual.getY(i)));
+            assertEquals(particle + " vx", bits(expected.getVX(i)), bits(actual.getVX(i)));
+            assertEquals(particle + " vy", bits(expected.getVY(i)), bits(actual.getVY(i)));
+        }
+        assertEquals(scene + ": springs", expected.neighbors.getSpringCount(), actual.neighbors.getSpringCount());
+    }
+
+    private static long bits(double value) {
+        return Double.doubleToRawLongBits(value);
+    }
+}
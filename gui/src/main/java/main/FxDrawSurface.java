@@ -0,0 +1,91 @@
+package main;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.StrokeLineCap;
+import simulation.DrawSurface;
+
+/**
+ * draws the simulation onto a JavaFX canvas
+ */
+public class FxDrawSurface implements DrawSurface {
+    private final GraphicsContext context;
+
+    public FxDrawSurface(GraphicsContext context) {
+        this.context = context;
+    }
+
+    private static Color color(int rgb, double opacity) {
+        return Color.rgb((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF, opacity);
+    }
+
+    @Override
+    public void setFill(int rgb, double opacity) {
+        context.setFill(color(rgb, opacity));
+    }
+
+    @Override
+    public void setStroke(int rgb, double opacity) {
+        context.setStroke(color(rgb, opacity));
+    }
+
+    @Override
+    public double getLineWidth() {
+        return context.getLineWidth();
+    }
+
+    @Override
+    public void setLineWidth(double width) {
+        context.setLineWidth(width);
+    }
+
+    @Override
+    public void setButtLineCap() {
+        context.setLineCap(StrokeLineCap.BUTT);
+    }
+
+    @Override
+    public void fillOval(double x, double y, double width, double height) {
+        context.fillOval(x, y, width, height);
+    }
+
+    @Override
+    public void strokeOval(double x, double y, double width, double height) {
+        context.strokeOval(x, y, width, height);
+    }
+
+    @Override
+    public void strokeLine(double x1, double y1, double x2, double y2) {
+        context.strokeLine(x1, y1, x2, y2);
+    }
+
+    @Override
+    public void strokeRect(double x, double y, double width, double height) {
+        context.strokeRect(x, y, width, height);
+    }
+
+    @Override
+    public void fillPolygon(double[] xs, double[] ys, int points) {
+        context.fillPolygon(xs, ys, points);
+    }
+
+    @Override
+    public void fillText(String text, double x, double y) {
+        context.fillText(text, x, y);
+    }
+
+    @Override
+    public void save() {
+        context.save();
+    }
+
+    @Override
+    public void restore() {
+        context.restore();
+    }
+
+    @Override
+    public void scale(double x, double y) {
+        context.scale(x, y);
+    }
+}
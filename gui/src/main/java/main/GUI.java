@@ -0,0 +1,331 @@
+package main;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.StackPane;
+import javafx.scene.transform.Affine;
+import javafx.stage.FileChooser;
+import javafx.stage.Stage;
+import rendering.FluidSurface;
+import rendering.ParticleRaster;
+import simulation.Checkpoint;
+import simulation.FluidNew;
+import simulation.SimulationThread;
+import simulation.Snapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Supplier;
+
+public class GUI extends Application {
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+
+    private static final double WIDTH = 800;
+    private static final double HEIGHT = 600;
+
+    private static final double DELTA_T = 0.0333333; //0.0333333;
+    private static final double STEPS_PER_SECOND = 60;
+    private static final int MAX_PARTICLES = 1000;
+
+    private double mouseX;
+    private double mouseY;
+    private double mouseXold;
+    private double mouseYold;
+    private boolean mouseMoved = false;
+
+    private Supplier<FluidNew> FluidFactory = () -> new FluidNew(0);
+    private Map<String, Supplier<FluidNew>> sceneOptions = Map.ofEntries(
+            Map.entry("High Viscosity", FluidNew::HighViscosity),
+            Map.entry("Low Viscosity", FluidNew::LowViscosity),
+            Map.entry("Viscoelastic", FluidNew::Viscoelastic),
+            Map.entry("Stack Huge", () -> FluidNew.Stack(1000)),
+            Map.entry("Stack 100", () -> FluidNew.Stack(100)),
+            Map.entry("Stack 20", () -> FluidNew.Stack(20)),
+            Map.entry("Two Particles", FluidNew::TwoParticles),
+            Map.entry("Splash", FluidNew::Splash),
+            Map.entry("End", FluidNew::End),
+            Map.entry("SourceSink", FluidNew::SourceSink),
+            Map.entry("Fountain", FluidNew::Fountain),
+            Map.entry("Faucet", FluidNew::Faucet)
+    );
+
+    FluidNew fluid;
+    SimulationThread simulation;
+    GraphicsContext context;
+    boolean sleeping = false;
+    FxDrawSurface surface;
+    Canvas canvas;
+
+    // particles and overlays are rasterized off the canvas and pushed as one image per frame
+    ParticleRaster raster;
+    WritableImage image;
+
+    // draw the fluid as a traced surface instead of particles
+    boolean surfaceMode = false;
+    FluidSurface fluidSurface;
+
+    // draw the latest snapshot even if the simulation did not publish a new one
+    boolean redraw = true;
+    long drawnVersion = -1;
+
+    // the simulation failure last shown, each one is shown once
+    RuntimeException shownFailure;
+
+    private void drawFluid(Snapshot snapshot) {
+        Affine transform = context.getTransform();
+        context.setTransform(new Affine());
+        context.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        context.setTransform(transform);
+        fluid.drawObstacles(surface);
+
+        if (surfaceMode) {
+            fluidSurface.update(fluid, snapshot);
+            fluidSurface.draw(surface);
+        } else {
+            int[] pixels = raster.render(fluid, snapshot);
+            image.getPixelWriter().setPixels(0, 0, raster.getWidth(), raster.getHeight(),
+                    PixelFormat.getIntArgbPreInstance(), pixels, 0, raster.getWidth());
+            context.setTransform(new Affine());
+            context.drawImage(image, 0, 0);
+            context.setTransform(transform);
+        }
+
+        fluid.drawMouseOver(surface, snapshot, mouseX, mouseY);
+    }
+
+    /**
+     * replace the running simulation with a new one from the current factory, the old thread is shut down first
+     */
+    private void newFluid(boolean running) {
+        if (simulation != null) simulation.shutdown();
+        if (fluidSurface != null) fluidSurface.shutdown();
+
+        fluid = FluidFactory.get();
+        fluidSurface = new FluidSurface((int) WIDTH, (int) HEIGHT, fluid.getCapacity(),
+                Runtime.getRuntime().availableProcessors());
+        if (fluid.isSleeping() != sleeping) fluid.setSleeping(sleeping);
+        simulation = new SimulationThread(fluid, 2 * DELTA_T, STEPS_PER_SECOND);
+        simulation.setRunning(running);
+        simulation.start();
+        redraw = true;
+    }
+
+    private void showError(String message, Throwable error) {
+        Alert alert = new Alert(Alert.AlertType.ERROR, message + ": " + error.getMessage());
+        alert.show();
+    }
+
+    private void toggleDisplayStats() {
+        fluid.drawVelocity = !fluid.drawVelocity;
+        fluid.drawSprings = !fluid.drawSprings;
+        fluid.drawInteractionRadius = !fluid.drawInteractionRadius;
+    }
+
+    @Override
+    public void start(Stage primaryStage) throws Exception {
+        newFluid(false);
+        toggleDisplayStats();
+        canvas = new Canvas(WIDTH, HEIGHT);
+        raster = new ParticleRaster((int) WIDTH, (int) HEIGHT, Runtime.getRuntime().availableProcessors());
+        image = new WritableImage((int) WIDTH, (int) HEIGHT);
+        context = canvas.getGraphicsContext2D();
+        surface = new FxDrawSurface(context);
+        Affine transform = new Affine();
+        transform.appendScale(1, -1);
+        transform.appendTranslation(0, -HEIGHT);
+        context.setTransform(transform);
+
+        Label particleCount = new Label();
+//        particleCount.textProperty().bind(Bindings.size(fluid.particles).asString());
+
+        Button stepButton = new Button("Step");
+        stepButton.setOnAction(e -> {
+            if (!simulation.isRunning()) {
+                simulation.submit(fluid -> fluid.advance(DELTA_T));
+            }
+        });
+        Button playButton = new Button("Play");
+        playButton.setOnAction(e -> {
+            if (simulation.isRunning()) {
+                playButton.setText("Play");
+                simulation.setRunning(false);
+            } else {
+                playButton.setText("Stop");
+                simulation.setRunning(true);
+            }
+        });
+        Button resetButton = new Button("Reset");
+        resetButton.setOnAction(e -> {
+            boolean displayStats = fluid.drawVelocity;
+
+            newFluid(simulation.isRunning());
+//            particleCount.textProperty().bind(Bindings.size(fluid.particles).asString());
+
+            if (!displayStats) {
+                toggleDisplayStats();
+            }
+        });
+        Button onlyParticleButton = new Button("Display");
+        onlyParticleButton.setOnAction(e -> {
+            toggleDisplayStats();
+
+            redraw = true;
+        });
+        Button surfaceButton = new Button("Surface");
+        surfaceButton.setOnAction(e -> {
+            surfaceMode = !surfaceMode;
+            surfaceButton.setText(surfaceMode ? "Particles" : "Surface");
+            redraw = true;
+        });
+        Button sleepButton = new Button("Sleep");
+        sleepButton.setOnAction(e -> {
+            sleeping = !sleeping;
+            boolean sleep = sleeping;
+            simulation.submit(fluid -> fluid.setSleeping(sleep));
+            sleepButton.setText(sleeping ? "Wake" : "Sleep");
+        });
+        FileChooser checkpointChooser = new FileChooser();
+        checkpointChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Checkpoints", "*.ckpt"));
+        Button saveButton = new Button("Save");
+        saveButton.setOnAction(e -> {
+            File file = checkpointChooser.showSaveDialog(primaryStage);
+            if (file == null) return;
+
+            simulation.checkpoint(file.toPath()).whenComplete((written, error) -> {
+                if (error != null) Platform.runLater(() -> showError("Saving " + file + " failed", error));
+            });
+        });
+        Button loadButton = new Button("Load");
+        loadButton.setOnAction(e -> {
+            File file = checkpointChooser.showOpenDialog(primaryStage);
+            if (file == null) return;
+
+            Checkpoint checkpoint;
+            try {
+                checkpoint = Checkpoint.read(file.toPath());
+            } catch (IOException error) {
+                showError("Loading " + file + " failed", error);
+                return;
+            }
+            playButton.setText("Play");
+            boolean displayStats = fluid.drawVelocity;
+
+            FluidFactory = () -> FluidNew.restore(checkpoint);
+            newFluid(false);
+
+            if (!displayStats) {
+                toggleDisplayStats();
+            }
+        });
+        ComboBox<String> sceneSelection = new ComboBox<>();
+        List<String> options = new ArrayList<>(sceneOptions.keySet());
+        Collections.sort(options);
+        sceneSelection.getItems().addAll(options);
+        sceneSelection.setOnAction(e -> {
+            playButton.setText("Play");
+
+            FluidFactory = sceneOptions.get(sceneSelection.getSelectionModel().getSelectedItem());
+            newFluid(false);
+
+            toggleDisplayStats();
+        });
+
+        Node space = new Region();
+        HBox.setHgrow(space, Priority.ALWAYS);
+        HBox controls = new HBox(particleCount, space, playButton, stepButton, resetButton, onlyParticleButton, surfaceButton, sleepButton, saveButton, loadButton, sceneSelection);
+        controls.setAlignment(Pos.TOP_RIGHT);
+
+        StackPane root = new StackPane();
+        root.getChildren().addAll(canvas, controls);
+        StackPane.setAlignment(controls, Pos.TOP_RIGHT);
+
+//        root.setOnMouseMoved(e -> {
+//            if (e.isControlDown()) {
+//                fluid.particles.add(new Particle(new Point2D(e.getX(), root.getHeight() - e.getY()), Point2D.ZERO));
+//            }
+//        });
+//
+//        root.setOnKeyPressed(e -> {
+//            if (e.getCode() == KeyCode.A) {
+//                fluid.produce = true;
+//            } else if (e.getCode() == KeyCode.S) {
+//                fluid.produce2 = true;
+//            }
+//        });
+//
+//        root.setOnKeyReleased(e -> {
+//            if (e.getCode() == KeyCode.A) {
+//                fluid.produce = false;
+//            } else if (e.getCode() == KeyCode.S) {
+//                fluid.produce2 = false;
+//            }
+//        });
+
+        root.setOnMouseMoved(e -> {
+            mouseX = e.getX();
+            mouseY = root.getHeight() - e.getY();
+            redraw = true;
+
+            // forces are applied by the simulation thread between two steps
+            double x = mouseX, y = mouseY, xOld = mouseXold, yOld = mouseYold;
+            if (e.isControlDown()) {
+                simulation.submit(fluid -> fluid.applyExternalForce(x, y, 1, 50));
+            } else if (e.isShiftDown()) {
+                simulation.submit(fluid -> fluid.applyExternalForce(x, y, -1, 100));
+            } else if (e.isAltDown()) {
+                simulation.submit(fluid -> fluid.applyExternalForce(xOld, yOld, x, y, 3));
+            }
+            mouseXold = mouseX;
+            mouseYold = mouseY;
+        });
+
+        primaryStage.setScene(new Scene(root));
+        primaryStage.setResizable(false);
+        primaryStage.setOnHidden(e -> {
+            simulation.shutdown();
+            raster.shutdown();
+            fluidSurface.shutdown();
+        });
+        primaryStage.show();
+
+        // the simulation steps on its own thread, every frame draws whatever it published last
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                Snapshot snapshot = simulation.latest();
+                if (redraw || snapshot.getVersion() != drawnVersion) {
+                    drawFluid(snapshot);
+                    drawnVersion = snapshot.getVersion();
+                    redraw = false;
+                }
+                particleCount.setText(String.format("%d particles, %.0f steps/s", snapshot.getCount(), simulation.getStepRate()));
+
+                RuntimeException failure = simulation.getFailure();
+                if (failure != null && failure != shownFailure) {
+                    shownFailure = failure;
+                    if (!simulation.isRunning()) playButton.setText("Play");
+                    showError("The simulation failed", failure);
+                }
+            }
+        }.start();
+    }
+}
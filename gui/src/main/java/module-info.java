@@ -4,5 +4,5 @@ module fluid.sim.main {
     requires javafx.base;
     requires javafx.controls;
     requires javafx.graphics;
-    requires trove4j;
-}
\ No newline at end of file
+    requires fluid.sim.core;
+}